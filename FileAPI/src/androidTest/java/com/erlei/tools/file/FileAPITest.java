@@ -2,6 +2,7 @@ package com.erlei.tools.file;
 
 import android.Manifest;
 import android.content.Context;
+import android.support.annotation.NonNull;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.rule.GrantPermissionRule;
 import android.support.test.runner.AndroidJUnit4;
@@ -19,7 +20,23 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 /**
  * FileAPI test, which will execute on an Android device.
@@ -155,6 +172,572 @@ public class FileAPITest {
         Assert.assertTrue(internal.mkdirs().isDirectory());
     }
 
+    @Test
+    public void testCopy() {
+        byte[] bytes = new byte[1024 * 1024 + 17];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) i;
+        FileHandle source = FileAPI.internal(FileAPI.DATA, "source.bin").writeBytes(bytes, false);
+
+        FileHandle dest = source.copyTo(FileAPI.external(FileAPI.DATA, "dest.bin"));
+        Assert.assertEquals(source.length(), dest.length());
+        Assert.assertArrayEquals(bytes, dest.readBytes());
+
+        FileAPI.internal(FileAPI.CACHE).mkdirs();
+        dest = source.copyTo(FileAPI.internal(FileAPI.CACHE));
+        Assert.assertEquals(FileAPI.internal(FileAPI.CACHE, "source.bin"), dest);
+        Assert.assertArrayEquals(bytes, dest.readBytes());
+    }
+
+    @Test
+    public void testParallelCopy() throws Exception {
+        FileHandle source = FileAPI.internal("tree");
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                source.child("dir" + i).child("file" + j + ".txt").writeString(i + "-" + j, false);
+            }
+        }
+        FileHandle dest = FileAPI.external(FileAPI.CACHE);
+        CopyTask task = source.copyTo(dest, new CopyOptions().parallelism(4));
+        Assert.assertEquals(dest, task.get());
+        Assert.assertEquals(100, task.copiedCount());
+        Assert.assertTrue(task.errors().isEmpty());
+        Assert.assertEquals("3-7", dest.child("tree/dir3/file7.txt").readString());
+        Assert.assertEquals(source.length(), dest.child("tree").length());
+    }
+
+    @Test
+    public void testMap() {
+        FileHandle file = FileAPI.internal(FileAPI.DATA, "map.bin");
+        file.writeString("0123456789", false);
+        MappedByteBuffer buffer = file.map();
+        Assert.assertEquals(10, buffer.remaining());
+        Assert.assertEquals('0', buffer.get(0));
+        Assert.assertEquals('9', buffer.get(9));
+
+        buffer = file.map(4, 3);
+        Assert.assertEquals(3, buffer.remaining());
+        Assert.assertEquals('4', buffer.get());
+
+        buffer = file.map(FileChannel.MapMode.READ_WRITE);
+        buffer.put(0, (byte) 'a');
+        buffer.force();
+        Assert.assertEquals("a123456789", file.readString());
+        assertThrows(() -> FileAPI.internal("none.bin").map(), FileOperateException.class);
+    }
+
+    @Test
+    public void testBufferPool() {
+        FileHandle file = FileAPI.internal(FileAPI.DATA, "pool.txt").writeString("pool", false);
+        file.readString();
+        long hits = FileAPI.bufferPoolHits();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("pool", file.readString());
+            file.copyTo(FileAPI.internal(FileAPI.CACHE, "pool.txt"));
+        }
+        Assert.assertTrue(FileAPI.bufferPoolHits() >= hits + 10);
+    }
+
+    @Test
+    public void testLines() {
+        FileHandle file = FileAPI.internal(FileAPI.DATA, "lines.txt");
+        for (int i = 0; i < 100; i++) file.writeLine("line" + i);
+
+        int count = 0;
+        for (String line : file.lines()) {
+            Assert.assertEquals("line" + count++, line);
+        }
+        Assert.assertEquals(100, count);
+
+        long read = file.forEachLine((line, number) -> number < 9);
+        Assert.assertEquals(10, read);
+        assertThrows(() -> FileAPI.internal("none.txt").lines(), FileOperateException.class);
+    }
+
+    @Test
+    public void testReadString() {
+        FileHandle file = FileAPI.internal(FileAPI.DATA, "utf8.txt");
+        String str = "文件 API \uD83D\uDE00";
+        file.writeString(str, false, "UTF-8");
+        Assert.assertEquals(str, file.readString("UTF-8"));
+        Assert.assertEquals(str.getBytes().length, file.readBytes().length);
+
+        file.writeString("", false);
+        Assert.assertEquals("", file.readString());
+        Assert.assertEquals(0, file.readBytes().length);
+        assertThrows(() -> file.readString("unknown-charset"), FileOperateException.class);
+    }
+
+    @Test
+    public void testAtomicWrite() {
+        FileHandle file = FileAPI.internal(FileAPI.DATA, "config.json");
+        file.writeStringAtomic("{\"version\":1}", null, true);
+        Assert.assertEquals("{\"version\":1}", file.readString());
+        file.writeBytesAtomic("{}".getBytes(), false);
+        Assert.assertEquals("{}", file.readString());
+        Assert.assertEquals(1, file.parent().list().size());
+
+        assertThrows(() -> FileAPI.internal(FileAPI.DATA).writeBytesAtomic(new byte[1], false), FileOperateException.class);
+        assertThrows(() -> FileAPI.assets("data.txt").writeStringAtomic("", null, false), UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void testAppendWriter() throws Exception {
+        FileHandle file = FileAPI.internal(FileAPI.DATA, "append.log");
+        AppendWriter writer = file.appendWriter(null, 64, 0);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int id = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 100; j++) writer.writeLine(id + ":" + j);
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) thread.join();
+        writer.close();
+        Assert.assertEquals(400, file.forEachLine((line, number) -> true));
+        assertThrows(() -> writer.writeLine("closed"), FileOperateException.class);
+
+        AppendWriter timed = file.appendWriter(null, 1024, 100);
+        timed.write("tail");
+        Thread.sleep(500);
+        Assert.assertTrue(file.readString().endsWith("tail"));
+        timed.close();
+    }
+
+    @Test
+    public void testStat() {
+        FileHandle file = FileAPI.internal(FileAPI.DATA, "stat.txt");
+        Assert.assertFalse(file.stat().exists());
+        file.writeString("0123456789", false);
+        FileStat stat = file.stat();
+        Assert.assertTrue(stat.exists());
+        Assert.assertTrue(stat.isFile());
+        Assert.assertFalse(stat.isDirectory());
+        Assert.assertEquals(10, stat.length());
+        Assert.assertEquals(file.lastModified(), stat.lastModified());
+        Assert.assertTrue(file.parent().stat().isDirectory());
+
+        FileHandle cached = file.cached();
+        Assert.assertEquals(10, cached.length());
+        file.writeString("0123456789", true);
+        Assert.assertEquals(10, cached.length());
+        Assert.assertEquals(20, ((CachedFileHandle) cached).refresh().length());
+        cached.writeString("0123456789", true);
+        Assert.assertEquals(30, cached.length());
+        Assert.assertEquals(30, cached.parent().length());
+
+        FileStat asset = FileAPI.assets("data.txt").stat();
+        Assert.assertTrue(asset.isFile());
+        Assert.assertEquals(6, asset.length());
+        Assert.assertTrue(FileAPI.assets("shader").stat().isDirectory());
+    }
+
+    @Test
+    public void testWalk() {
+        FileHandle root = FileAPI.internal("walk");
+        FileHandle deep = root;
+        for (int i = 0; i < 200; i++) deep = deep.child("d");
+        deep.writeString("12345", false);
+        for (int i = 0; i < 10; i++) root.child("dir" + i).child("file.txt").writeString("12", false);
+
+        Assert.assertEquals(25, root.length());
+        Assert.assertEquals(25, root.walkSize(new WalkOptions().parallelism(4)));
+        Assert.assertEquals(5, root.walkSize(new WalkOptions().filter(file -> !file.getName().startsWith("dir"))));
+        Assert.assertEquals(220, root.walk((file, stat, depth) -> true));
+        Assert.assertEquals(220, root.walk(new WalkOptions().parallelism(4), (file, stat, depth) -> true));
+        Assert.assertEquals(11, root.walk(new WalkOptions().maxDepth(1), (file, stat, depth) -> true));
+        Assert.assertEquals(11, root.walk((file, stat, depth) -> !stat.isDirectory()));
+    }
+
+    @Test
+    public void testDeleteInBackground() throws Exception {
+        FileHandle cache = FileAPI.internal(FileAPI.CACHE);
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) cache.child("dir" + i).child("file" + j).writeString("cache", false);
+        }
+        Assert.assertTrue(cache.deleteInBackground());
+        Assert.assertFalse(cache.exists());
+
+        FileHandle data = FileAPI.external(FileAPI.DATA);
+        data.child("file.txt").writeString("data", false);
+        data.emptyDirectoryInBackground();
+        Assert.assertTrue(data.isDirectory());
+        Assert.assertEquals(0, data.list().size());
+
+        Thread.sleep(1000);
+        Assert.assertEquals(0, FileAPI.internal(".trash").list().size());
+        Assert.assertEquals(0, FileAPI.external(".trash").list().size());
+    }
+
+    @Test
+    public void testAssetIndex() {
+        FileHandle shader = FileAPI.assets("shader");
+        Assert.assertTrue(shader.exists());
+        Assert.assertTrue(shader.isDirectory());
+        Assert.assertArrayEquals(new String[]{"fragment.shader"}, shader.listPath());
+
+        FileHandle fragment = shader.child("fragment.shader");
+        Assert.assertTrue(fragment.exists());
+        Assert.assertFalse(fragment.isDirectory());
+        Assert.assertEquals(0, fragment.listPath().length);
+        Assert.assertEquals(fragment, FileAPI.assets("shader/fragment.shader"));
+
+        Assert.assertFalse(FileAPI.assets("none.txt").exists());
+        Assert.assertFalse(shader.child("none").exists());
+        Assert.assertFalse(FileAPI.assets("data.txt/none").exists());
+        Assert.assertTrue(FileAPI.assets("").isDirectory());
+    }
+
+    @Test
+    public void testExtract() throws Exception {
+        AssetFileHandle assets = (AssetFileHandle) FileAPI.assets("shader");
+        FileHandle dest = FileAPI.internal("shader");
+        Assert.assertEquals(dest, assets.extractTo(dest));
+        FileHandle fragment = dest.child("fragment.shader");
+        Assert.assertEquals(FileAPI.assets("shader/fragment.shader").readString(), fragment.readString());
+        Assert.assertTrue(dest.child(".extracted-" + Integer.toHexString("shader".hashCode())).exists());
+
+        long lastModified = fragment.lastModified();
+        Thread.sleep(1100);
+        assets.extractTo(dest);
+        Assert.assertEquals(lastModified, fragment.lastModified());
+
+        FileHandle data = ((AssetFileHandle) FileAPI.assets("data.txt")).extractTo(FileAPI.internal("data.txt"));
+        Assert.assertEquals("assets", data.readString());
+
+        FileHandle dir = FileAPI.internal("extract");
+        dir.mkdirs();
+        FileHandle child = ((AssetFileHandle) FileAPI.assets("data.txt")).extractTo(dir);
+        Assert.assertEquals(dir.child("data.txt"), child);
+        Assert.assertEquals("assets", child.readString());
+        dir.deleteDirectory();
+    }
+
+    @Test
+    public void testDigest() throws Exception {
+        byte[] bytes = new byte[3 * 1024 * 1024 + 7];
+        new java.util.Random(7).nextBytes(bytes);
+        FileHandle file = FileAPI.internal(FileAPI.DATA, "digest.bin").writeBytes(bytes, false);
+        Assert.assertArrayEquals(java.security.MessageDigest.getInstance("SHA-256").digest(bytes), file.digest("SHA-256"));
+
+        byte[] tree = file.digest("SHA-256", 1024 * 1024, 4);
+        Assert.assertArrayEquals(tree, file.digest("SHA-256", 1024 * 1024, 1));
+        Assert.assertFalse(java.util.Arrays.equals(tree, file.digest("SHA-256")));
+
+        FileHandle asset = FileAPI.assets("data.txt");
+        Assert.assertArrayEquals(java.security.MessageDigest.getInstance("MD5").digest("assets".getBytes()), asset.digest("MD5"));
+        Assert.assertArrayEquals(FileAPI.internal("data.txt").writeString("assets", false).digest("MD5", 4, 2), asset.digest("MD5", 4, 2));
+        assertThrows(() -> file.digest("unknown"), FileOperateException.class);
+    }
+
+    @Test
+    public void testSync() {
+        FileHandle source = FileAPI.external("content");
+        for (int i = 0; i < 10; i++) source.child("dir" + (i % 3)).child("file" + i).writeString("content" + i, false);
+        FileHandle dest = FileAPI.internal("content");
+        dest.child("extra/file").writeString("extra", false);
+
+        SyncResult result = source.syncTo(dest);
+        Assert.assertTrue(result.isSuccessful());
+        Assert.assertEquals(10, result.copiedCount());
+        Assert.assertTrue(dest.child("extra/file").exists());
+
+        source.child("dir1/file1").writeString("changed", false);
+        result = source.syncTo(dest, new SyncOptions().deleteExtraneous(true));
+        Assert.assertEquals(1, result.copiedCount());
+        Assert.assertEquals(9, result.unchangedCount());
+        Assert.assertEquals(1, result.deletedCount());
+        Assert.assertEquals("changed", dest.child("dir1/file1").readString());
+        Assert.assertFalse(dest.child("extra").exists());
+    }
+
+    @Test
+    public void testDiskCache() throws InterruptedException {
+        DiskCache cache = FileAPI.diskCache("test", 100);
+        cache.clear();
+        Assert.assertTrue(cache.put("a", new byte[40]));
+        Assert.assertTrue(cache.put("b", new byte[40]));
+        DiskCache.Snapshot snapshot = cache.get("a");
+        Assert.assertNotNull(snapshot);
+        Assert.assertTrue(cache.put("c", new byte[40]));
+        Thread.sleep(500);
+        Assert.assertEquals(80, cache.size());
+        Assert.assertNull(cache.get("b"));
+        Assert.assertTrue(cache.put("a", new byte[10]));
+        Assert.assertEquals(40, snapshot.readBytes().length);
+        Assert.assertEquals(10, cache.get("a").readBytes().length);
+
+        DiskCache.Editor editor = cache.edit("d");
+        Assert.assertNotNull(editor);
+        Assert.assertNull(cache.edit("d"));
+        editor.abort();
+        assertThrows(() -> cache.get("Invalid Key"), IllegalArgumentException.class);
+        cache.close();
+
+        DiskCache reopened = FileAPI.diskCache("test", 100);
+        Assert.assertEquals(50, reopened.size());
+        Assert.assertEquals(40, reopened.get("c").readBytes().length);
+        reopened.clear();
+        reopened.close();
+    }
+
+    @Test
+    public void testContentCache() {
+        FileAPI.enableContentCache(1024);
+        try {
+            FileHandle file = FileAPI.internal("content.txt");
+            file.writeString("hello", false);
+            Assert.assertEquals("hello", file.readString());
+            long hits = FileAPI.contentCacheHits();
+            Assert.assertEquals("hello", file.readString());
+            Assert.assertEquals(hits + 1, FileAPI.contentCacheHits());
+
+            byte[] bytes = file.readBytes();
+            bytes[0] = 'X';
+            Assert.assertEquals("hello", file.readString());
+
+            file.writeString("world", false);
+            Assert.assertEquals("world", file.readString());
+            Assert.assertEquals(5, FileAPI.contentCacheSize());
+
+            FileAPI.internal("large.txt").writeBytes(new byte[1024], false);
+            FileAPI.internal("large.txt").readBytes();
+            Assert.assertEquals(5, FileAPI.contentCacheSize());
+        } finally {
+            FileAPI.disableContentCache();
+        }
+        Assert.assertEquals(0, FileAPI.contentCacheSize());
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        FileHandle file = FileAPI.internal("async/file.txt");
+        Assert.assertEquals(file, file.async().writeStringAsync("async", false, null).get());
+        Assert.assertEquals("async", file.async().readStringAsync(null).get());
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Throwable[] failure = new Throwable[1];
+        FileAPI.internal("async/missing").async().readBytesAsync(new AsyncFileHandle.Callback<byte[]>() {
+            @Override
+            public void onSuccess(byte[] result) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(@NonNull Throwable error) {
+                failure[0] = error;
+                latch.countDown();
+            }
+        });
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(failure[0] instanceof FileOperateException);
+
+        Assert.assertEquals("async", file.async().copyToAsync(FileAPI.internal("async/copy.txt")).get().readString());
+        Assert.assertTrue(FileAPI.internal("async").async().deleteAsync().get());
+        Assert.assertFalse(file.exists());
+    }
+
+    @Test
+    public void testPositional() {
+        FileHandle file = FileAPI.internal("positional.bin");
+        file.writeAt(4, new byte[]{5, 6, 7, 8}, 0, 4);
+        file.writeAt(0, ByteBuffer.wrap(new byte[]{1, 2, 3, 4}));
+        Assert.assertEquals(8, file.length());
+
+        byte[] bytes = new byte[4];
+        Assert.assertEquals(4, file.readAt(2, bytes, 0, 4));
+        Assert.assertArrayEquals(new byte[]{3, 4, 5, 6}, bytes);
+        Assert.assertEquals(2, file.readAt(6, bytes, 0, 4));
+        Assert.assertEquals(0, file.readAt(8, bytes, 0, 4));
+
+        file.writeString("replaced", false);
+        Assert.assertEquals(8, file.readAt(0, bytes = new byte[8], 0, 8));
+        Assert.assertEquals("replaced", new String(bytes));
+        assertThrows(() -> FileAPI.internal("missing.bin").readAt(0, new byte[1], 0, 1), FileOperateException.class);
+        FileAPI.closeSharedChannels();
+    }
+
+    @Test
+    public void testRangeWriter() throws Exception {
+        FileHandle file = FileAPI.internal("range.bin");
+        byte[] data = new byte[64 * 1024];
+        new Random(1).nextBytes(data);
+
+        RangeWriter writer = file.rangeWriter(data.length);
+        writer.write(0, data, 0, 16 * 1024);
+        writer.write(32 * 1024, data, 32 * 1024, 16 * 1024);
+        Assert.assertFalse(writer.isComplete());
+        assertThrows(writer::finish, FileOperateException.class);
+        writer.close();
+        Assert.assertFalse(file.exists());
+
+        RangeWriter resumed = file.rangeWriter(data.length);
+        Assert.assertEquals(32 * 1024, resumed.completedBytes());
+        List<long[]> missing = resumed.missingRanges();
+        Assert.assertEquals(2, missing.size());
+        ExecutorService executor = Executors.newFixedThreadPool(missing.size());
+        List<Future<?>> futures = new ArrayList<>();
+        for (final long[] range : missing) {
+            futures.add(executor.submit(() -> resumed.write(range[0], data, (int) range[0], (int) (range[1] - range[0]))));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+        Assert.assertTrue(resumed.isComplete());
+        Assert.assertArrayEquals(data, resumed.finish().readBytes());
+        Assert.assertFalse(file.sibling("range.bin.part").exists());
+        Assert.assertFalse(file.sibling("range.bin.ranges").exists());
+    }
+
+    @Test
+    public void testRangeWriterInterruptedWriter() throws Exception {
+        FileHandle file = FileAPI.internal("range-interrupt.bin");
+        int chunk = 4096;
+        int chunks = 64;
+        byte[] data = new byte[chunk * chunks];
+        new Random(2).nextBytes(data);
+
+        RangeWriter writer = file.rangeWriter(data.length);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            final int index = i;
+            futures.add(executor.submit(() -> {
+                //被中断的写入会关闭共享的通道，其他线程应该重新打开并继续写入
+                if (index == chunks / 2) Thread.currentThread().interrupt();
+                try {
+                    writer.write((long) index * chunk, data, index * chunk, chunk);
+                } finally {
+                    Thread.interrupted();
+                }
+            }));
+        }
+        int failed = 0;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failed++;
+            }
+        }
+        executor.shutdown();
+        Assert.assertEquals(1, failed);
+        writer.close();
+
+        RangeWriter resumed = file.rangeWriter(data.length);
+        Assert.assertEquals(data.length - chunk, resumed.completedBytes());
+        for (long[] range : resumed.missingRanges()) {
+            resumed.write(range[0], data, (int) range[0], (int) (range[1] - range[0]));
+        }
+        Assert.assertArrayEquals(data, resumed.finish().readBytes());
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) builder.append("{\"index\":").append(i).append("}").append(FileAPI.LINE_SEPARATOR);
+        String content = builder.toString();
+        FileHandle file = FileAPI.internal("compressed.gz");
+        file.writeStringCompressed(content, "UTF-8");
+        Assert.assertTrue(file.length() < content.length() / 4);
+        Assert.assertEquals(content, file.readStringCompressed("UTF-8"));
+
+        InputStream input = new GZIPInputStream(file.read());
+        Assert.assertEquals(content, StreamUtils.copyStreamToString(input, 0, "UTF-8"));
+        input.close();
+
+        byte[] bytes = new byte[4096];
+        file.writeCompressed(bytes);
+        Assert.assertArrayEquals(bytes, file.readBytesCompressed());
+
+        file.writeString(content, false);
+        assertThrows(file::readCompressed, FileOperateException.class);
+    }
+
+    @Test
+    public void testZip() throws IOException {
+        FileHandle source = FileAPI.internal("zip/source");
+        for (int i = 0; i < 100; i++) source.child("dir" + (i % 5)).child("file" + i).writeString("content" + i, false);
+        source.child("empty").mkdirs();
+        FileHandle archive = source.zipTo(FileAPI.internal("zip/archive.zip"), new ZipOptions().parallelism(4));
+
+        ZipFile zip = new ZipFile(archive.file());
+        Assert.assertEquals(106, zip.size());
+        Assert.assertNotNull(zip.getEntry("dir1/file1"));
+        zip.close();
+
+        FileHandle dest = archive.unzipTo(FileAPI.internal("zip/dest"));
+        Assert.assertEquals("content42", dest.child("dir2/file42").readString());
+        Assert.assertTrue(dest.child("empty").isDirectory());
+
+        FileHandle evil = FileAPI.internal("zip/evil.zip");
+        ZipOutputStream output = new ZipOutputStream(evil.write(false));
+        output.putNextEntry(new ZipEntry("../evil"));
+        output.write(1);
+        output.close();
+        assertThrows(() -> evil.unzipTo(FileAPI.internal("zip/evil")), FileOperateException.class);
+        Assert.assertFalse(FileAPI.internal("zip/evil").sibling("evil").exists());
+    }
+
+    @Test
+    public void testRollingWriter() throws Exception {
+        FileHandle file = FileAPI.internal("logs/app.log");
+        RollingFileWriter writer = file.rollingWriter(new RollingOptions().maxFileSize(4096).maxFiles(2).compress(true));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final int producer = i;
+            futures.add(executor.submit(() -> {
+                for (int line = 0; line < 500; line++) writer.writeLine("producer" + producer + " line" + line);
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+        writer.writeLine("last");
+        writer.flush();
+        Assert.assertNull(writer.error());
+        Assert.assertTrue(file.readString().endsWith("last" + FileAPI.LINE_SEPARATOR));
+        Assert.assertTrue(writer.rotatedFile(1).exists());
+        Assert.assertTrue(writer.rotatedFile(2).exists());
+        Assert.assertFalse(writer.rotatedFile(3).exists());
+        Assert.assertTrue(writer.rotatedFile(1).readStringCompressed(null).contains("line"));
+        writer.close();
+        assertThrows(() -> writer.write("closed"), FileOperateException.class);
+    }
+
+    @Test
+    public void testMetrics() {
+        FileAPI.resetMetrics();
+        FileAPI.internal("metrics.txt").writeString("disabled", false);
+        Assert.assertTrue(FileAPI.metricsSnapshot().stats().isEmpty());
+
+        FileAPI.setMetricsEnabled(true);
+        final AtomicInteger callbacks = new AtomicInteger();
+        FileAPI.setIOListener((operation, root, file, bytes, nanos) -> callbacks.incrementAndGet());
+        try {
+            FileHandle file = FileAPI.internal("metrics.txt").writeBytes(new byte[100], false);
+            file.readBytes();
+            file.copyTo(FileAPI.external("metrics.txt"));
+            file.parent().list();
+            FileAPI.external("metrics.txt").delete();
+
+            IOMetrics.Snapshot snapshot = FileAPI.metricsSnapshot();
+            IOMetrics.Stat write = snapshot.get(IOMetrics.Operation.WRITE, IOMetrics.Root.INTERNAL);
+            Assert.assertNotNull(write);
+            Assert.assertEquals(1, write.count());
+            Assert.assertEquals(100, write.bytes());
+            Assert.assertEquals(100, snapshot.get(IOMetrics.Operation.READ, IOMetrics.Root.INTERNAL).bytes());
+            Assert.assertEquals(1, snapshot.get(IOMetrics.Operation.COPY, IOMetrics.Root.INTERNAL).count());
+            Assert.assertEquals(1, snapshot.get(IOMetrics.Operation.DELETE, IOMetrics.Root.EXTERNAL).count());
+            Assert.assertTrue(snapshot.count(IOMetrics.Operation.LIST) >= 1);
+            Assert.assertTrue(write.percentileMicros(1) > 0);
+            Assert.assertTrue(callbacks.get() >= 5);
+        } finally {
+            FileAPI.setMetricsEnabled(false);
+            FileAPI.setIOListener(null);
+            FileAPI.resetMetrics();
+        }
+    }
+
     @Test
     public void testPath() {
         FileHandle internal = FileAPI.internal("1.txt");
@@ -0,0 +1,160 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static com.erlei.tools.file.FileAPI.LINE_SEPARATOR;
+
+/**
+ * Created by lll on 2019/8/16
+ * Email : erleizh@gmail.com
+ * Describe : 长期持有的追加写入器，写入只是追加到内存缓冲区，
+ * 缓冲的字符数超过阈值或距上次写入超过刷新间隔时才写入文件。可以在多个线程之间共享。
+ *
+ * @see FileHandle#appendWriter()
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class AppendWriter implements Closeable, Flushable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    private static ScheduledExecutorService sFlusher;
+
+    private final FileHandle mFile;
+    private final String mCharset;
+    private final int mBufferSize;
+    private final StringBuilder mBuffer;
+    private final ScheduledFuture<?> mFlushTask;
+    private Writer mWriter;
+    private boolean mClosed;
+
+    AppendWriter(@NonNull FileHandle file, @Nullable String charset, int bufferSize, long flushInterval) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        mFile = file;
+        mCharset = charset;
+        mBufferSize = bufferSize;
+        mBuffer = new StringBuilder(bufferSize);
+        if (flushInterval > 0) {
+            mFlushTask = flusher().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        flush();
+                    } catch (FileOperateException ignored) {
+                        //下一次写入或刷新时会再次抛出
+                    }
+                }
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        } else {
+            mFlushTask = null;
+        }
+    }
+
+    private static synchronized ScheduledExecutorService flusher() {
+        if (sFlusher == null) {
+            sFlusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    Thread thread = new Thread(r, "FileAPI-AppendWriter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sFlusher;
+    }
+
+    /**
+     * @return 写入的文件
+     */
+    @NonNull
+    public FileHandle file() {
+        return mFile;
+    }
+
+    /**
+     * 追加字符串
+     *
+     * @param string 要写入的字符串
+     * @return AppendWriter
+     * @throws FileOperateException 如果已经关闭，或者缓冲区满时写入文件失败
+     */
+    @NonNull
+    public synchronized AppendWriter write(@NonNull String string) {
+        ensureOpen();
+        mBuffer.append(string);
+        if (mBuffer.length() >= mBufferSize) flushBuffer();
+        return this;
+    }
+
+    /**
+     * 追加字符串并换行
+     *
+     * @param string 要写入的字符串
+     * @return AppendWriter
+     * @throws FileOperateException 如果已经关闭，或者缓冲区满时写入文件失败
+     */
+    @NonNull
+    public synchronized AppendWriter writeLine(@NonNull String string) {
+        ensureOpen();
+        mBuffer.append(string).append(LINE_SEPARATOR);
+        if (mBuffer.length() >= mBufferSize) flushBuffer();
+        return this;
+    }
+
+    /**
+     * 将缓冲区中的内容写入文件
+     *
+     * @throws FileOperateException 如果写入失败
+     */
+    @Override
+    public synchronized void flush() {
+        if (mClosed) return;
+        flushBuffer();
+    }
+
+    /**
+     * 写入剩余内容并关闭文件，关闭后不能再写入
+     *
+     * @throws FileOperateException 如果写入失败
+     */
+    @Override
+    public synchronized void close() {
+        if (mClosed) return;
+        if (mFlushTask != null) mFlushTask.cancel(false);
+        try {
+            flushBuffer();
+        } finally {
+            mClosed = true;
+            StreamUtils.closeQuietly(mWriter);
+            mWriter = null;
+        }
+    }
+
+    private void ensureOpen() {
+        if (mClosed) throw new FileOperateException("AppendWriter already closed: " + mFile);
+    }
+
+    private void flushBuffer() {
+        if (mBuffer.length() == 0) return;
+        try {
+            if (mWriter == null) mWriter = mFile.writer(true, mCharset);
+            mWriter.append(mBuffer);
+            mWriter.flush();
+            mBuffer.setLength(0);
+        } catch (IOException ex) {
+            throw new FileOperateException("Error writing file: " + mFile, ex);
+        }
+    }
+}
@@ -6,10 +6,16 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Created by lll on 2019/8/6
@@ -19,16 +25,24 @@ import java.io.Writer;
 public class AssetFileHandle extends FileHandle {
 
     private AssetManager mAssetManager;
+    private AssetIndex mIndex;
     private static final String sPrefix = "asset://";
+    private static final String EXTRACT_STAMP = ".extracted";
 
     public AssetFileHandle(AssetManager assetManager, String path) {
         super(path);
         mAssetManager = assetManager;
+        mIndex = AssetIndex.of(assetManager);
     }
 
     public AssetFileHandle(AssetManager assetManager, File file) {
+        this(assetManager, AssetIndex.of(assetManager), file);
+    }
+
+    private AssetFileHandle(AssetManager assetManager, AssetIndex index, File file) {
         super(file);
         mAssetManager = assetManager;
+        mIndex = index;
     }
 
 
@@ -77,6 +91,38 @@ public class AssetFileHandle extends FileHandle {
         throw new UnsupportedOperationException("Cannot write to an asset file:" + file);
     }
 
+    @NonNull
+    @Override
+    public RollingFileWriter rollingWriter(@NonNull RollingOptions options) {
+        throw new UnsupportedOperationException("Cannot write to an asset file:" + file);
+    }
+
+    @NonNull
+    @Override
+    public RangeWriter rangeWriter(long length, long checkpointBytes) {
+        throw new UnsupportedOperationException("Cannot write to an asset file:" + file);
+    }
+
+    @Override
+    public void writeAt(long position, @NonNull byte[] bytes, int offset, int length) {
+        throw new UnsupportedOperationException("Cannot write to an asset file:" + file);
+    }
+
+    @Override
+    public void writeAt(long position, @NonNull ByteBuffer buffer) {
+        throw new UnsupportedOperationException("Cannot write to an asset file:" + file);
+    }
+
+    @Override
+    public FileHandle writeBytesAtomic(@NonNull byte[] bytes, int offset, int length, boolean sync) {
+        throw new UnsupportedOperationException("Cannot write to an asset file:" + file);
+    }
+
+    @Override
+    public FileHandle writeStringAtomic(@NonNull String string, @Nullable String charset, boolean sync) {
+        throw new UnsupportedOperationException("Cannot write to an asset file:" + file);
+    }
+
     @Override
     public FileHandle writeString(@NonNull String string, boolean append) {
         throw new UnsupportedOperationException("Cannot write to an asset file:" + file);
@@ -97,6 +143,16 @@ public class AssetFileHandle extends FileHandle {
         throw new UnsupportedOperationException("Cannot delete an asset file: " + file);
     }
 
+    @Override
+    public boolean deleteInBackground() {
+        throw new UnsupportedOperationException("Cannot delete an asset file: " + file);
+    }
+
+    @Override
+    public void emptyDirectoryInBackground() {
+        throw new UnsupportedOperationException("Cannot delete an asset file: " + file);
+    }
+
     @Override
     public void emptyDirectory() {
         throw new UnsupportedOperationException("Cannot delete an asset file: " + file);
@@ -109,8 +165,8 @@ public class AssetFileHandle extends FileHandle {
 
     @Override
     public FileHandle child(String name) {
-        if (file.getPath().length() == 0) return new AssetFileHandle(mAssetManager, new File(name));
-        return new AssetFileHandle(mAssetManager, new File(file, name));
+        if (file.getPath().length() == 0) return new AssetFileHandle(mAssetManager, mIndex, new File(name));
+        return new AssetFileHandle(mAssetManager, mIndex, new File(file, name));
     }
 
     @NonNull
@@ -129,6 +185,12 @@ public class AssetFileHandle extends FileHandle {
         throw new UnsupportedOperationException("Cannot write to an asset file:" + file);
     }
 
+    @NonNull
+    @Override
+    public AppendWriter appendWriter(@Nullable String charset, int bufferSize, long flushInterval) {
+        throw new UnsupportedOperationException("Cannot write to an asset file:" + file);
+    }
+
     @NonNull
     @Override
     public FileHandle parent() {
@@ -136,7 +198,7 @@ public class AssetFileHandle extends FileHandle {
         if (parent == null) {
             parent = new File("/");
         }
-        return new AssetFileHandle(mAssetManager, parent);
+        return new AssetFileHandle(mAssetManager, mIndex, parent);
     }
 
     @NonNull
@@ -144,13 +206,19 @@ public class AssetFileHandle extends FileHandle {
     public FileHandle sibling(@NonNull String name) {
         if (file.getPath().length() == 0)
             throw new FileOperateException("Cannot get the sibling of the root.");
-        return new AssetFileHandle(mAssetManager, new File(file.getParent(), name));
+        return new AssetFileHandle(mAssetManager, mIndex, new File(file.getParent(), name));
     }
 
+    /**
+     * 每个目录只列出一次，see {@link AssetIndex}
+     */
     @Override
     public String[] listPath() {
+        long start = IOMetrics.start();
         try {
-            return mAssetManager.list(file.getPath());
+            String[] paths = mIndex.list(file.getPath());
+            IOMetrics.record(IOMetrics.Operation.LIST, this, 0, start);
+            return paths;
         } catch (IOException e) {
             throw new FileOperateException("Error listing children: " + file, e);
         }
@@ -158,22 +226,32 @@ public class AssetFileHandle extends FileHandle {
 
     @Override
     public boolean isDirectory() {
-        try {
-            String[] list = mAssetManager.list(file.getPath());
-            return list != null && list.length > 0;
-        } catch (IOException e) {
-            return false;
-        }
+        return mIndex.isDirectory(file.getPath());
     }
 
     @Override
     public boolean exists() {
-        try {
-            mAssetManager.open(file.getPath()).close();
-            return true;
-        } catch (IOException e) {
-            return isDirectory();
-        }
+        return mIndex.exists(file.getPath());
+    }
+
+    /**
+     * 资产没有修改时间，也不会发生变化
+     */
+    @NonNull
+    @Override
+    public FileStat stat() {
+        if (isDirectory()) return new FileStat(true, true, false, 0, 0);
+        if (!exists()) return FileStat.MISSING;
+        return new FileStat(true, false, true, length(), 0);
+    }
+
+    /**
+     * 资产不会发生变化，不需要缓存句柄
+     */
+    @NonNull
+    @Override
+    public FileHandle cached() {
+        return this;
     }
 
     @Nullable
@@ -185,22 +263,234 @@ public class AssetFileHandle extends FileHandle {
         }
     }
 
+    /**
+     * @return 资产文件大小，压缩的资产和目录返回 0
+     */
     @Override
     public long length() {
-        AssetFileDescriptor assetFileDescriptor = null;
+        return mIndex.length(file.getPath());
+    }
+
+    /**
+     * 资产不能按路径随机读取 gzip 尾部，使用较小的初始大小，由缓冲区自行增长
+     */
+    @Override
+    int uncompressedSizeHint() {
+        return Compression.BUFFER_SIZE;
+    }
+
+    /**
+     * 通过 {@link AssetFileDescriptor} 直接映射 APK 中的资产，只支持未压缩的资产和只读模式。
+     *
+     * @throws FileOperateException 如果资产不存在或被压缩
+     */
+    @NonNull
+    @Override
+    public MappedByteBuffer map(@NonNull FileChannel.MapMode mode, long position, long size) {
+        if (mode != FileChannel.MapMode.READ_ONLY)
+            throw new UnsupportedOperationException("Cannot write to an asset file:" + file);
+        AssetFileDescriptor descriptor = null;
+        FileInputStream input = null;
         try {
-            assetFileDescriptor = mAssetManager.openFd(file.getPath());
-            return assetFileDescriptor.getLength();
-        } catch (IOException ignored) {
-            return 0;
+            descriptor = mAssetManager.openFd(file.getPath());
+            long length = descriptor.getLength();
+            if (size < 0) size = length - position;
+            if (position < 0 || size < 0 || position + size > length)
+                throw new FileOperateException("Invalid map region [" + position + ", " + size + "] of asset: " + file);
+            input = descriptor.createInputStream();
+            return input.getChannel().map(FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset() + position, size);
+        } catch (IOException e) {
+            throw new FileOperateException("Cannot map a compressed or missing asset: " + file, e);
         } finally {
-            if (assetFileDescriptor != null) {
+            StreamUtils.closeQuietly(input);
+            StreamUtils.closeQuietly(descriptor);
+        }
+    }
+
+    /**
+     * 资产不能作为 {@link java.util.zip.ZipFile} 打开，只能顺序解压
+     */
+    @NonNull
+    @Override
+    public FileHandle unzipTo(@NonNull FileHandle dir, @NonNull ZipOptions options) {
+        return ZipArchive.unzip(read(), dir);
+    }
+
+    /**
+     * 未压缩的资产通过共享的 {@link AssetFileDescriptor} 通道读取，压缩的资产只能从头读取并跳过 position 之前的字节。
+     * 资产是否压缩记录在 {@link AssetIndex} 中，之后的调用直接选择读取方式
+     */
+    @Override
+    public int readAt(long position, @NonNull ByteBuffer buffer) {
+        if (position < 0) throw new IllegalArgumentException("position must not be negative: " + position);
+        if (mIndex.isCompressed(file.getPath())) return readStreamAt(position, buffer);
+        ChannelPool.Channel channel;
+        try {
+            channel = acquireChannel(false);
+        } catch (IOException compressed) {
+            mIndex.setCompressed(file.getPath());
+            return readStreamAt(position, buffer);
+        }
+        return readAt(position, buffer, channel);
+    }
+
+    private int readStreamAt(long position, ByteBuffer buffer) {
+        InputStream input = read();
+        byte[] bytes = null;
+        try {
+            long skipped = 0;
+            while (skipped < position) {
+                long count = input.skip(position - skipped);
+                if (count <= 0) {
+                    if (input.read() < 0) return 0;
+                    count = 1;
+                }
+                skipped += count;
+            }
+            bytes = StreamUtils.obtainByteBuffer();
+            int total = 0;
+            while (buffer.hasRemaining()) {
+                int count = input.read(bytes, 0, Math.min(bytes.length, buffer.remaining()));
+                if (count < 0) break;
+                buffer.put(bytes, 0, count);
+                total += count;
+            }
+            return total;
+        } catch (IOException ex) {
+            throw new FileOperateException("Error reading file: " + file, ex);
+        } finally {
+            StreamUtils.recycle(bytes);
+            StreamUtils.closeQuietly(input);
+        }
+    }
+
+    @NonNull
+    @Override
+    ChannelPool.Channel acquireChannel(boolean write) throws IOException {
+        if (write) throw new UnsupportedOperationException("Cannot write to an asset file:" + file);
+        return ChannelPool.acquire("asset:" + file.getPath() + "#r", new ChannelPool.Opener() {
+            @NonNull
+            @Override
+            public ChannelPool.Channel open() throws IOException {
+                AssetFileDescriptor descriptor = mAssetManager.openFd(file.getPath());
+                FileInputStream input = descriptor.createInputStream();
+                return new ChannelPool.Channel(input.getChannel(), descriptor.getStartOffset(), descriptor.getLength(), descriptor);
+            }
+        });
+    }
+
+    /**
+     * 未压缩的资产通过 {@link AssetFileDescriptor} 并行读取，压缩的资产只能顺序读取，两者结果相同
+     */
+    @NonNull
+    @Override
+    public byte[] digest(@NonNull String algorithm, int chunkSize, int parallelism) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        AssetFileDescriptor descriptor = null;
+        FileInputStream input = null;
+        try {
+            try {
+                descriptor = mAssetManager.openFd(file.getPath());
+            } catch (IOException compressed) {
+                InputStream stream = read();
                 try {
-                    assetFileDescriptor.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    return FileDigest.treeDigest(stream, algorithm, chunkSize);
+                } finally {
+                    StreamUtils.closeQuietly(stream);
                 }
             }
+            input = descriptor.createInputStream();
+            return FileDigest.treeDigest(input.getChannel(), descriptor.getStartOffset(), descriptor.getLength(),
+                    algorithm, chunkSize, parallelism);
+        } catch (IOException e) {
+            throw new FileOperateException("Error reading file: " + file, e);
+        } finally {
+            StreamUtils.closeQuietly(input);
+            StreamUtils.closeQuietly(descriptor);
+        }
+    }
+
+    /**
+     * 将此资产目录下的所有内容并行解压到指定目录，see {@link #extractTo(FileHandle, CopyOptions)}
+     *
+     * @param dest 目标目录
+     * @return 资产是目录时返回 dest，否则返回解压得到的文件
+     */
+    @NonNull
+    public FileHandle extractTo(@NonNull FileHandle dest) {
+        return extractTo(dest, new CopyOptions());
+    }
+
+    /**
+     * 将此资产目录下的所有内容并行解压到指定目录，阻塞直到完成。资产是文件时与 {@link #copyTo(FileHandle)} 相同，
+     * dest 是已存在的目录时解压为 dest 下的同名文件，否则解压为 dest。
+     * 资产树只通过索引遍历一次，未压缩的资产直接从 APK 传输到目标文件。
+     * 完成后写入按资产路径命名的标记文件，同一个 APK 版本再次解压时直接返回，多个资产解压到同一个目录时互不影响
+     *
+     * @param dest    目标目录
+     * @param options 并行参数
+     * @return 资产是目录时返回 dest，否则返回解压得到的文件
+     * @throws FileOperateException 如果有文件解压失败
+     */
+    @NonNull
+    public FileHandle extractTo(@NonNull FileHandle dest, @NonNull CopyOptions options) {
+        boolean directory = isDirectory();
+        FileHandle target = !directory && dest.isDirectory() ? dest.child(name()) : dest;
+        FileHandle stamp = extractStamp(target, directory);
+        String version = FileAPI.versionStamp();
+        String expected = version == null ? null : version + ":" + file.getPath();
+        if (expected != null && stamp.exists() && expected.equals(stamp.readString("UTF-8"))) return target;
+        stamp.delete();
+        CopyTask task = new CopyTask(this, target, target, options).start();
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            throw (FileOperateException) e.getCause();
+        } catch (InterruptedException e) {
+            task.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new FileOperateException("Interrupted extracting asset: " + file, e);
+        }
+        if (expected != null) stamp.writeStringAtomic(expected, "UTF-8", false);
+        return target;
+    }
+
+    /**
+     * @return 目录资产的标记文件在目标目录中，文件资产的标记文件与目标文件相邻，文件名包含资产路径的哈希
+     */
+    private FileHandle extractStamp(FileHandle target, boolean directory) {
+        String name = EXTRACT_STAMP + "-" + Integer.toHexString(file.getPath().hashCode());
+        return directory ? target.child(name) : target.sibling("." + target.name() + name);
+    }
+
+    /**
+     * 通过 {@link AssetFileDescriptor} 将未压缩的资产直接从 APK 传输到目标文件
+     *
+     * @return false 如果资产被压缩，需要通过流复制
+     */
+    boolean transferTo(@NonNull FileHandle dest) throws IOException {
+        AssetFileDescriptor descriptor;
+        try {
+            descriptor = mAssetManager.openFd(file.getPath());
+        } catch (IOException e) {
+            return false;
+        }
+        FileInputStream input = null;
+        OutputStream output = null;
+        try {
+            input = descriptor.createInputStream();
+            output = dest.write(false);
+            if (output instanceof FileOutputStream) {
+                StreamUtils.copyChannel(input.getChannel(), descriptor.getStartOffset(), descriptor.getLength(),
+                        ((FileOutputStream) output).getChannel());
+            } else {
+                StreamUtils.copyStream(input, output);
+            }
+            return true;
+        } finally {
+            StreamUtils.closeQuietly(input);
+            StreamUtils.closeQuietly(output);
+            StreamUtils.closeQuietly(descriptor);
         }
     }
 
@@ -0,0 +1,190 @@
+package com.erlei.tools.file;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Created by lll on 2019/8/26
+ * Email : erleizh@gmail.com
+ * Describe : 资产路径索引，按需构建的路径前缀树。
+ * 每个资产目录只调用一次 {@link AssetManager#list(String)}，每个资产文件只调用一次 {@link AssetManager#openFd(String)}，
+ * 之后的 exists，isDirectory，listPath，length 都是内存查找。资产在 APK 安装后不会变化，所以缓存永远不会过期
+ */
+final class AssetIndex {
+
+    private static final long UNKNOWN_LENGTH = -1;
+    private static final String[] EMPTY = new String[0];
+    private static final Map<AssetManager, AssetIndex> sIndexes = new WeakHashMap<>();
+
+    /**
+     * 弱引用，否则作为 {@link #sIndexes} 的值会一直持有自己的键，索引永远不会被回收
+     */
+    private final WeakReference<AssetManager> mAssetManager;
+    private final Node mRoot = new Node("");
+
+    private AssetIndex(AssetManager assetManager) {
+        mAssetManager = new WeakReference<>(assetManager);
+    }
+
+    @NonNull
+    static synchronized AssetIndex of(@NonNull AssetManager assetManager) {
+        AssetIndex index = sIndexes.get(assetManager);
+        if (index == null) {
+            index = new AssetIndex(assetManager);
+            sIndexes.put(assetManager, index);
+        }
+        return index;
+    }
+
+    /**
+     * 使用索引的 {@link AssetFileHandle} 持有 AssetManager 的强引用，正常情况下不会被回收
+     */
+    @NonNull
+    private AssetManager assetManager() throws IOException {
+        AssetManager assetManager = mAssetManager.get();
+        if (assetManager == null) throw new IOException("AssetManager has been garbage collected");
+        return assetManager;
+    }
+
+    /**
+     * @return 目录下的子项名称，文件或不存在的路径返回空数组
+     * @throws IOException 如果无法列出目录
+     */
+    @NonNull
+    String[] list(@NonNull String path) throws IOException {
+        Node node = find(path);
+        if (node == null) return EMPTY;
+        return children(node).names.clone();
+    }
+
+    boolean isDirectory(@NonNull String path) {
+        try {
+            Node node = find(path);
+            return node != null && children(node).names.length > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    boolean exists(@NonNull String path) {
+        try {
+            return find(path) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return 资产文件大小，压缩的资产和目录返回 0
+     */
+    long length(@NonNull String path) {
+        Node node = findQuietly(path);
+        if (node == null) return 0;
+        long length = node.length;
+        if (length == UNKNOWN_LENGTH) {
+            length = openLength(node);
+            node.length = length;
+        }
+        return length;
+    }
+
+    /**
+     * @return 资产是否已知为压缩存储，无法通过 {@link AssetManager#openFd(String)} 打开
+     */
+    boolean isCompressed(@NonNull String path) {
+        Node node = findQuietly(path);
+        return node != null && node.compressed;
+    }
+
+    /**
+     * 记录资产无法通过 {@link AssetManager#openFd(String)} 打开，之后直接使用流读取
+     */
+    void setCompressed(@NonNull String path) {
+        Node node = findQuietly(path);
+        if (node != null) node.compressed = true;
+    }
+
+    @Nullable
+    private Node findQuietly(String path) {
+        try {
+            return find(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private long openLength(Node node) {
+        AssetFileDescriptor descriptor = null;
+        try {
+            descriptor = assetManager().openFd(node.path);
+            return descriptor.getLength();
+        } catch (IOException ignored) {
+            node.compressed = true;
+            return 0;
+        } finally {
+            StreamUtils.closeQuietly(descriptor);
+        }
+    }
+
+    /**
+     * 从根节点逐级查找，沿途按需列出目录
+     *
+     * @return 路径对应的节点，不存在时返回 null
+     */
+    @Nullable
+    private Node find(String path) throws IOException {
+        Node node = mRoot;
+        for (String name : path.split("/")) {
+            if (name.isEmpty() || name.equals(".")) continue;
+            node = children(node).nodes.get(name);
+            if (node == null) return null;
+        }
+        return node;
+    }
+
+    private Children children(Node node) throws IOException {
+        Children children = node.children;
+        if (children != null) return children;
+        synchronized (node) {
+            if (node.children == null) {
+                String[] names = assetManager().list(node.path);
+                if (names == null) names = EMPTY;
+                Map<String, Node> nodes = new HashMap<>(names.length * 2);
+                for (String name : names) {
+                    nodes.put(name, new Node(node.path.isEmpty() ? name : node.path + "/" + name));
+                }
+                node.children = new Children(names, nodes);
+            }
+            return node.children;
+        }
+    }
+
+    private static final class Node {
+        final String path;
+        volatile Children children;
+        volatile long length = UNKNOWN_LENGTH;
+        volatile boolean compressed;
+
+        Node(String path) {
+            this.path = path;
+        }
+    }
+
+    private static final class Children {
+        final String[] names;
+        final Map<String, Node> nodes;
+
+        Children(String[] names, Map<String, Node> nodes) {
+            this.names = names;
+            this.nodes = nodes;
+        }
+    }
+}
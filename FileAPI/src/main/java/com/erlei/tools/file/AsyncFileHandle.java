@@ -0,0 +1,263 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Created by lll on 2019/9/4
+ * Email : erleizh@gmail.com
+ * Describe : FileHandle 的异步操作，所有操作都在 {@link FileAPI#setIOExecutor} 指定的 I/O 线程池中执行。
+ * 返回的 Future 可以用 {@link Future#cancel(boolean)} 取消，正在进行的复制会在下一个数据块之后中断。
+ * 操作失败时 {@link Future#get()} 抛出的 ExecutionException 包含原来的 {@link FileOperateException}
+ *
+ * @see FileHandle#async()
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class AsyncFileHandle {
+
+    /**
+     * 异步操作的回调，在 I/O 线程中调用，被取消的操作不会回调
+     */
+    public interface Callback<T> {
+
+        void onSuccess(T result);
+
+        void onFailure(@NonNull Throwable error);
+    }
+
+    private final FileHandle mHandle;
+
+    AsyncFileHandle(@NonNull FileHandle handle) {
+        mHandle = handle;
+    }
+
+    /**
+     * @return 同步操作的 FileHandle
+     */
+    @NonNull
+    public FileHandle handle() {
+        return mHandle;
+    }
+
+    /**
+     * @see FileHandle#readBytes()
+     */
+    @NonNull
+    public Future<byte[]> readBytesAsync() {
+        return readBytesAsync(null);
+    }
+
+    /**
+     * @see FileHandle#readBytes()
+     */
+    @NonNull
+    public Future<byte[]> readBytesAsync(@Nullable Callback<byte[]> callback) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return mHandle.readBytes();
+            }
+        }, callback);
+    }
+
+    /**
+     * @see FileHandle#readString(String)
+     */
+    @NonNull
+    public Future<String> readStringAsync(@Nullable String charset) {
+        return readStringAsync(charset, null);
+    }
+
+    /**
+     * @see FileHandle#readString(String)
+     */
+    @NonNull
+    public Future<String> readStringAsync(@Nullable final String charset, @Nullable Callback<String> callback) {
+        return submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return mHandle.readString(charset);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see FileHandle#writeBytes(byte[], boolean)
+     */
+    @NonNull
+    public Future<FileHandle> writeBytesAsync(@NonNull byte[] bytes, boolean append) {
+        return writeBytesAsync(bytes, append, null);
+    }
+
+    /**
+     * @see FileHandle#writeBytes(byte[], boolean)
+     */
+    @NonNull
+    public Future<FileHandle> writeBytesAsync(@NonNull final byte[] bytes, final boolean append, @Nullable Callback<FileHandle> callback) {
+        return submit(new Callable<FileHandle>() {
+            @Override
+            public FileHandle call() {
+                return mHandle.writeBytes(bytes, append);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see FileHandle#writeString(String, boolean, String)
+     */
+    @NonNull
+    public Future<FileHandle> writeStringAsync(@NonNull String string, boolean append, @Nullable String charset) {
+        return writeStringAsync(string, append, charset, null);
+    }
+
+    /**
+     * @see FileHandle#writeString(String, boolean, String)
+     */
+    @NonNull
+    public Future<FileHandle> writeStringAsync(@NonNull final String string, final boolean append, @Nullable final String charset,
+                                               @Nullable Callback<FileHandle> callback) {
+        return submit(new Callable<FileHandle>() {
+            @Override
+            public FileHandle call() {
+                return mHandle.writeString(string, append, charset);
+            }
+        }, callback);
+    }
+
+    /**
+     * 复制文件或目录，取消后正在复制的文件会在下一个数据块之后中断，已复制的部分不会被删除
+     *
+     * @see FileHandle#copyTo(FileHandle)
+     */
+    @NonNull
+    public Future<FileHandle> copyToAsync(@NonNull FileHandle dest) {
+        return copyToAsync(dest, null);
+    }
+
+    /**
+     * @see #copyToAsync(FileHandle)
+     */
+    @NonNull
+    public Future<FileHandle> copyToAsync(@NonNull final FileHandle dest, @Nullable Callback<FileHandle> callback) {
+        return submit(new Callable<FileHandle>() {
+            @Override
+            public FileHandle call() {
+                return mHandle.copyTo(dest);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see FileHandle#moveTo(FileHandle)
+     */
+    @NonNull
+    public Future<FileHandle> moveToAsync(@NonNull FileHandle dest) {
+        return moveToAsync(dest, null);
+    }
+
+    /**
+     * @see #moveToAsync(FileHandle)
+     */
+    @NonNull
+    public Future<FileHandle> moveToAsync(@NonNull final FileHandle dest, @Nullable Callback<FileHandle> callback) {
+        return submit(new Callable<FileHandle>() {
+            @Override
+            public FileHandle call() {
+                return mHandle.moveTo(dest);
+            }
+        }, callback);
+    }
+
+    /**
+     * 以递归方式删除此文件或目录
+     *
+     * @see FileHandle#deleteDirectory()
+     */
+    @NonNull
+    public Future<Boolean> deleteAsync() {
+        return deleteAsync(null);
+    }
+
+    /**
+     * @see #deleteAsync()
+     */
+    @NonNull
+    public Future<Boolean> deleteAsync(@Nullable Callback<Boolean> callback) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mHandle.deleteDirectory();
+            }
+        }, callback);
+    }
+
+    /**
+     * @see FileHandle#length()
+     */
+    @NonNull
+    public Future<Long> lengthAsync() {
+        return lengthAsync(null);
+    }
+
+    /**
+     * @see #lengthAsync()
+     */
+    @NonNull
+    public Future<Long> lengthAsync(@Nullable Callback<Long> callback) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return mHandle.length();
+            }
+        }, callback);
+    }
+
+    private static <T> Future<T> submit(Callable<T> callable, @Nullable Callback<T> callback) {
+        Task<T> task = new Task<>(callable, callback);
+        FileAPI.ioExecutor().execute(task);
+        return task;
+    }
+
+    private static final class Task<T> extends FutureTask<T> {
+        private final Callback<T> mCallback;
+
+        Task(Callable<T> callable, Callback<T> callback) {
+            super(callable);
+            mCallback = callback;
+        }
+
+        /**
+         * 只有异步任务中的复制循环会检查中断，cancel(true) 可以中断长时间的复制
+         */
+        @Override
+        public void run() {
+            boolean previous = StreamUtils.beginCancellable();
+            try {
+                super.run();
+            } finally {
+                StreamUtils.endCancellable(previous);
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (mCallback == null || isCancelled()) return;
+            T result;
+            try {
+                result = get();
+            } catch (ExecutionException ex) {
+                mCallback.onFailure(ex.getCause() != null ? ex.getCause() : ex);
+                return;
+            } catch (InterruptedException ex) {
+                mCallback.onFailure(ex);
+                return;
+            }
+            mCallback.onSuccess(result);
+        }
+    }
+}
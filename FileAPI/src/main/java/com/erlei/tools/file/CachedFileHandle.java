@@ -0,0 +1,220 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Created by lll on 2019/8/19
+ * Email : erleizh@gmail.com
+ * Describe : 缓存文件属性的文件句柄，第一次查询时获取一次 {@link FileStat}，
+ * 之后的 exists()，isDirectory()，isFile()，length()，lastModified() 都直接返回缓存。
+ * 通过此句柄修改文件会清除缓存，其他途径修改文件后需要调用 {@link #refresh()}。
+ * child()，parent()，sibling() 返回的也是缓存句柄
+ *
+ * @see FileHandle#cached()
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class CachedFileHandle extends FileHandle {
+
+    private volatile FileStat mStat;
+
+    public CachedFileHandle(@NonNull String fileName) {
+        super(fileName);
+    }
+
+    public CachedFileHandle(@NonNull File file) {
+        super(file);
+    }
+
+    /**
+     * 丢弃缓存，下一次查询时重新获取文件属性
+     *
+     * @return this
+     */
+    @NonNull
+    public CachedFileHandle refresh() {
+        mStat = null;
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FileStat stat() {
+        FileStat stat = mStat;
+        if (stat == null) {
+            stat = super.stat();
+            mStat = stat;
+        }
+        return stat;
+    }
+
+    @NonNull
+    @Override
+    public FileHandle cached() {
+        return this;
+    }
+
+    @Override
+    public boolean exists() {
+        return stat().exists();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return stat().isDirectory();
+    }
+
+    @Override
+    public boolean isFile() {
+        return stat().isFile();
+    }
+
+    @Override
+    public long lastModified() {
+        return stat().lastModified();
+    }
+
+    @Override
+    public long length() {
+        FileStat stat = stat();
+        return stat.isDirectory() ? super.length() : stat.length();
+    }
+
+    @NonNull
+    @Override
+    public OutputStream write(boolean append) {
+        refresh();
+        return super.write(append);
+    }
+
+    @NonNull
+    @Override
+    public Writer writer(boolean append, @Nullable String charset) {
+        refresh();
+        return super.writer(append, charset);
+    }
+
+    /**
+     * 写入期间读取属性可能缓存了中间状态，流关闭之后再次清除
+     */
+    @Override
+    void outputClosed() {
+        refresh();
+    }
+
+    @Override
+    public void writeAt(long position, @NonNull ByteBuffer buffer) {
+        try {
+            super.writeAt(position, buffer);
+        } finally {
+            refresh();
+        }
+    }
+
+    @NonNull
+    @Override
+    public MappedByteBuffer map(@NonNull FileChannel.MapMode mode, long position, long size) {
+        try {
+            return super.map(mode, position, size);
+        } finally {
+            if (mode != FileChannel.MapMode.READ_ONLY) refresh();
+        }
+    }
+
+    /**
+     * 文件被删除，替换，或者 {@link RangeWriter#finish()} 完成时同时丢弃属性缓存
+     */
+    @Override
+    void invalidate() {
+        super.invalidate();
+        refresh();
+    }
+
+    @Override
+    public FileHandle writeBytesAtomic(@NonNull byte[] bytes, int offset, int length, boolean sync) {
+        try {
+            return super.writeBytesAtomic(bytes, offset, length, sync);
+        } finally {
+            refresh();
+        }
+    }
+
+    @Override
+    public boolean delete() {
+        refresh();
+        return super.delete();
+    }
+
+    @Override
+    public boolean deleteDirectory() {
+        refresh();
+        return super.deleteDirectory();
+    }
+
+    @Override
+    public boolean deleteInBackground() {
+        try {
+            return super.deleteInBackground();
+        } finally {
+            refresh();
+        }
+    }
+
+    @Override
+    public void emptyDirectoryInBackground() {
+        try {
+            super.emptyDirectoryInBackground();
+        } finally {
+            refresh();
+        }
+    }
+
+    @Override
+    public void emptyDirectory(boolean preserveTree) {
+        refresh();
+        super.emptyDirectory(preserveTree);
+    }
+
+    @Override
+    public FileHandle mkdirs() {
+        refresh();
+        return super.mkdirs();
+    }
+
+    @Override
+    public FileHandle moveTo(FileHandle dest) {
+        refresh();
+        return super.moveTo(dest);
+    }
+
+    @Override
+    public FileHandle child(String name) {
+        if (file.getPath().length() == 0) return new CachedFileHandle(new File(name));
+        return new CachedFileHandle(new File(file, name));
+    }
+
+    @NonNull
+    @Override
+    public FileHandle parent() {
+        File parent = file.getParentFile();
+        if (parent == null) {
+            parent = new File("/");
+        }
+        return new CachedFileHandle(parent);
+    }
+
+    @NonNull
+    @Override
+    public FileHandle sibling(@NonNull String name) {
+        if (file.getPath().length() == 0)
+            throw new FileOperateException("Cannot get the sibling of the root.");
+        return new CachedFileHandle(new File(file.getParent(), name));
+    }
+}
@@ -0,0 +1,168 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by lll on 2019/9/5
+ * Email : erleizh@gmail.com
+ * Describe : 共享的 FileChannel 池，按路径和打开模式复用已打开的通道，供 {@link FileHandle#readAt} 和 {@link FileHandle#writeAt} 使用。
+ * FileChannel 的定位读写本身是线程安全的，多个线程可以同时使用同一个通道。
+ * 通道有引用计数，超出数量上限时关闭最久未使用的通道，正在使用的通道在最后一次释放时才关闭
+ */
+final class ChannelPool {
+
+    static final int DEFAULT_MAX_CHANNELS = 16;
+
+    /**
+     * 打开一个新的通道
+     */
+    interface Opener {
+        @NonNull
+        Channel open() throws IOException;
+    }
+
+    /**
+     * 池中的一个通道。offset 和 length 用于资产这类位于 APK 中间的文件，普通文件为 0 和 -1
+     */
+    static final class Channel {
+        final FileChannel channel;
+        final long offset;
+        final long length;
+        private final Closeable mOwner;
+        private int mRefs;
+        private boolean mEvicted;
+
+        Channel(@NonNull FileChannel channel, long offset, long length, @NonNull Closeable owner) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+            mOwner = owner;
+        }
+
+        private void close() {
+            StreamUtils.closeQuietly(channel);
+            StreamUtils.closeQuietly(mOwner);
+        }
+    }
+
+    private static final LinkedHashMap<String, Channel> sChannels = new LinkedHashMap<>(16, 0.75f, true);
+    private static int sMaxChannels = DEFAULT_MAX_CHANNELS;
+
+    private ChannelPool() {
+    }
+
+    /**
+     * 取得一个通道，使用完后必须调用 {@link #release(Channel)}
+     */
+    @NonNull
+    static Channel acquire(@NonNull String key, @NonNull Opener opener) throws IOException {
+        synchronized (sChannels) {
+            Channel channel = sChannels.get(key);
+            if (channel != null && channel.channel.isOpen()) {
+                channel.mRefs++;
+                return channel;
+            }
+        }
+        Channel opened = opener.open();
+        List<Channel> closing = new ArrayList<>();
+        Channel result;
+        synchronized (sChannels) {
+            Channel existing = sChannels.get(key);
+            if (existing != null && existing.channel.isOpen()) {
+                closing.add(opened);
+                result = existing;
+                result.mRefs++;
+            } else {
+                if (existing != null) evict(existing, closing);
+                sChannels.put(key, opened);
+                result = opened;
+                result.mRefs++;
+                trim(closing);
+            }
+        }
+        for (Channel channel : closing) channel.close();
+        return result;
+    }
+
+    static void release(@NonNull Channel channel) {
+        boolean close;
+        synchronized (sChannels) {
+            channel.mRefs--;
+            close = channel.mEvicted && channel.mRefs == 0;
+        }
+        if (close) channel.close();
+    }
+
+    /**
+     * 关闭路径及其子路径对应的所有通道，文件被删除或替换时调用，避免继续读写旧文件
+     */
+    static void close(@NonNull String path) {
+        List<Channel> closing = new ArrayList<>();
+        synchronized (sChannels) {
+            if (sChannels.isEmpty()) return;
+            Iterator<Map.Entry<String, Channel>> iterator = sChannels.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Channel> entry = iterator.next();
+                String key = entry.getKey();
+                if (key.startsWith(path) && key.length() > path.length()
+                        && (key.charAt(path.length()) == '#' || key.charAt(path.length()) == File.separatorChar)) {
+                    iterator.remove();
+                    evict(entry.getValue(), closing);
+                }
+            }
+        }
+        for (Channel channel : closing) channel.close();
+    }
+
+    /**
+     * 关闭所有空闲的通道，正在使用的通道在释放时关闭
+     */
+    static void closeAll() {
+        List<Channel> closing = new ArrayList<>();
+        synchronized (sChannels) {
+            for (Channel channel : sChannels.values()) evict(channel, closing);
+            sChannels.clear();
+        }
+        for (Channel channel : closing) channel.close();
+    }
+
+    static void setMaxChannels(int maxChannels) {
+        if (maxChannels < 0) throw new IllegalArgumentException("maxChannels must not be negative: " + maxChannels);
+        List<Channel> closing = new ArrayList<>();
+        synchronized (sChannels) {
+            sMaxChannels = maxChannels;
+            trim(closing);
+        }
+        for (Channel channel : closing) channel.close();
+    }
+
+    static int openChannels() {
+        synchronized (sChannels) {
+            return sChannels.size();
+        }
+    }
+
+    private static void trim(List<Channel> closing) {
+        Iterator<Channel> iterator = sChannels.values().iterator();
+        while (sChannels.size() > sMaxChannels && iterator.hasNext()) {
+            Channel channel = iterator.next();
+            iterator.remove();
+            evict(channel, closing);
+        }
+    }
+
+    private static void evict(Channel channel, List<Channel> closing) {
+        channel.mEvicted = true;
+        if (channel.mRefs == 0) closing.add(channel);
+    }
+}
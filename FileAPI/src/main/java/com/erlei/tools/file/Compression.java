@@ -0,0 +1,293 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Created by lll on 2019/9/9
+ * Email : erleizh@gmail.com
+ * Describe : gzip 格式的压缩读写。Deflater 和 Inflater 持有 native 内存，创建和释放的代价很高，
+ * 这里将用完的实例 reset 后放回池中复用；gzip 的头部，尾部和 CRC32 由这里直接读写，
+ * 因为 {@link java.util.zip.GZIPOutputStream} 和 {@link java.util.zip.GZIPInputStream} 不能使用外部传入的实例
+ */
+final class Compression {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int MAX_POOL_SIZE = 4;
+    /**
+     * deflate 的最大压缩比约为 1032:1，超出时 ISIZE 不可信
+     */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+    /**
+     * gzip 头部和尾部的最小长度
+     */
+    private static final int MIN_GZIP_LENGTH = 18;
+    static final int BUFFER_SIZE = 8192;
+
+    private static volatile int sLevel = Deflater.DEFAULT_COMPRESSION;
+    /**
+     * 按压缩级别分开的 Deflater 池，下标为 level + 1
+     */
+    @SuppressWarnings("unchecked")
+    private static final ArrayDeque<Deflater>[] sDeflaters = new ArrayDeque[11];
+    private static final ArrayDeque<Inflater> sInflaters = new ArrayDeque<>();
+
+    static {
+        for (int i = 0; i < sDeflaters.length; i++) sDeflaters[i] = new ArrayDeque<>();
+    }
+
+    private Compression() {
+    }
+
+    static int level() {
+        return sLevel;
+    }
+
+    static void setLevel(int level) {
+        sLevel = checkLevel(level);
+    }
+
+    static int checkLevel(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        return level;
+    }
+
+    /**
+     * @return 输出原始 deflate 数据（不带 zlib 头部和校验）的 Deflater，使用完后调用 {@link #recycle(Deflater, int)}
+     */
+    @NonNull
+    static Deflater obtainDeflater(int level) {
+        ArrayDeque<Deflater> pool = sDeflaters[checkLevel(level) + 1];
+        synchronized (pool) {
+            Deflater deflater = pool.poll();
+            if (deflater != null) return deflater;
+        }
+        return new Deflater(level, true);
+    }
+
+    /**
+     * 放回 {@link #obtainDeflater(int)} 取得的 Deflater，池满时释放
+     */
+    static void recycle(@NonNull Deflater deflater, int level) {
+        deflater.reset();
+        ArrayDeque<Deflater> pool = sDeflaters[level + 1];
+        synchronized (pool) {
+            if (pool.size() < MAX_POOL_SIZE) {
+                pool.push(deflater);
+                return;
+            }
+        }
+        deflater.end();
+    }
+
+    /**
+     * @return 读取原始 deflate 数据的 Inflater，使用完后调用 {@link #recycle(Inflater)}
+     */
+    @NonNull
+    static Inflater obtainInflater() {
+        synchronized (sInflaters) {
+            Inflater inflater = sInflaters.poll();
+            if (inflater != null) return inflater;
+        }
+        return new Inflater(true);
+    }
+
+    static void recycle(@NonNull Inflater inflater) {
+        inflater.reset();
+        synchronized (sInflaters) {
+            if (sInflaters.size() < MAX_POOL_SIZE) {
+                sInflaters.push(inflater);
+                return;
+            }
+        }
+        inflater.end();
+    }
+
+    /**
+     * 读取 gzip 尾部的 ISIZE（原始数据长度模 2^32）作为解压输出缓冲区的初始大小。
+     * 无法读取，或者 ISIZE 超过数组上限，与压缩后的长度不相符时返回 {@link #BUFFER_SIZE}，由缓冲区自行增长
+     *
+     * @param maxSize 数组长度上限
+     */
+    static int estimateUncompressedSize(@NonNull File file, int maxSize) {
+        long length = file.length();
+        if (length < MIN_GZIP_LENGTH) return BUFFER_SIZE;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            raf.seek(length - 4);
+            long size = (raf.read() & 0xff) | (raf.read() & 0xff) << 8 | (raf.read() & 0xff) << 16 | (long) (raf.read() & 0xff) << 24;
+            if (size <= 0 || size > maxSize || size > length * MAX_DEFLATE_RATIO) return BUFFER_SIZE;
+            return (int) size;
+        } catch (IOException e) {
+            return BUFFER_SIZE;
+        } finally {
+            StreamUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * 写入 gzip 格式的压缩流，close 时写入尾部并关闭底层流
+     */
+    static final class GzipOutputStream extends DeflaterOutputStream {
+        private final CRC32 mCrc = new CRC32();
+        private final int mLevel;
+        private boolean mFinished;
+        private boolean mClosed;
+
+        GzipOutputStream(@NonNull OutputStream out, int level) throws IOException {
+            super(out, obtainDeflater(level), BUFFER_SIZE);
+            mLevel = level;
+            try {
+                out.write(new byte[]{(byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff});
+            } catch (IOException | RuntimeException ex) {
+                //构造失败时调用方拿不到这个流，无法通过 close 归还 Deflater
+                recycle(def, level);
+                throw ex;
+            }
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            mCrc.update(b, off, len);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (mFinished) return;
+            mFinished = true;
+            super.finish();
+            byte[] trailer = new byte[8];
+            writeInt(trailer, 0, (int) mCrc.getValue());
+            writeInt(trailer, 4, (int) def.getBytesRead());
+            out.write(trailer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mClosed) return;
+            mClosed = true;
+            try {
+                finish();
+            } finally {
+                out.close();
+                Compression.recycle(def, mLevel);
+            }
+        }
+
+        private static void writeInt(byte[] bytes, int offset, int value) {
+            bytes[offset] = (byte) value;
+            bytes[offset + 1] = (byte) (value >> 8);
+            bytes[offset + 2] = (byte) (value >> 16);
+            bytes[offset + 3] = (byte) (value >> 24);
+        }
+    }
+
+    /**
+     * 读取 gzip 格式的压缩流，到达末尾时校验 CRC32 和长度
+     */
+    static final class GzipInputStream extends InflaterInputStream {
+        private final CRC32 mCrc = new CRC32();
+        private boolean mEof;
+        private boolean mClosed;
+
+        GzipInputStream(@NonNull InputStream in) throws IOException {
+            super(in, obtainInflater(), BUFFER_SIZE);
+            try {
+                readHeader();
+            } catch (IOException ex) {
+                close();
+                throw ex;
+            }
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            if (mEof) return -1;
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                mEof = true;
+                readTrailer();
+            } else {
+                mCrc.update(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return mEof ? 0 : super.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mClosed) return;
+            mClosed = true;
+            try {
+                in.close();
+            } finally {
+                Compression.recycle(inf);
+            }
+        }
+
+        private void readHeader() throws IOException {
+            if (readShort() != GZIP_MAGIC) throw new ZipException("Not in GZIP format");
+            if (readByte() != Deflater.DEFLATED) throw new ZipException("Unsupported compression method");
+            int flags = readByte();
+            skipBytes(6);
+            if ((flags & FEXTRA) == FEXTRA) skipBytes(readShort());
+            if ((flags & FNAME) == FNAME) skipString();
+            if ((flags & FCOMMENT) == FCOMMENT) skipString();
+            if ((flags & FHCRC) == FHCRC) skipBytes(2);
+        }
+
+        private void readTrailer() throws IOException {
+            byte[] trailer = new byte[8];
+            int remaining = Math.min(inf.getRemaining(), trailer.length);
+            System.arraycopy(buf, len - inf.getRemaining(), trailer, 0, remaining);
+            for (int i = remaining; i < trailer.length; i++) trailer[i] = (byte) readByte();
+            long crc = (trailer[0] & 0xff) | (trailer[1] & 0xff) << 8 | (trailer[2] & 0xff) << 16 | (long) (trailer[3] & 0xff) << 24;
+            long size = (trailer[4] & 0xff) | (trailer[5] & 0xff) << 8 | (trailer[6] & 0xff) << 16 | (long) (trailer[7] & 0xff) << 24;
+            if (crc != mCrc.getValue() || size != (inf.getBytesWritten() & 0xffffffffL))
+                throw new ZipException("Corrupt GZIP trailer");
+        }
+
+        private int readShort() throws IOException {
+            return readByte() | readByte() << 8;
+        }
+
+        private int readByte() throws IOException {
+            int b = in.read();
+            if (b == -1) throw new EOFException("Unexpected end of GZIP stream");
+            return b;
+        }
+
+        private void skipBytes(int count) throws IOException {
+            for (int i = 0; i < count; i++) readByte();
+        }
+
+        private void skipString() throws IOException {
+            //noinspection StatementWithEmptyBody
+            while (readByte() != 0) ;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by lll on 2019/9/3
+ * Email : erleizh@gmail.com
+ * Describe : 文件内容的内存缓存，按路径保存最近读取的文件内容，并记录读取时文件的修改时间和长度，
+ * 二者任一变化则视为失效。按字节数淘汰最久未使用的内容。
+ * 正在读取的路径记录各自的代数，路径或它的上级目录失效时增加代数，读取开始之后发生过失效的内容不会被保存，
+ * 避免与写入重叠的读取缓存旧内容，其他路径的写入不影响
+ *
+ * @see FileAPI#enableContentCache(long)
+ */
+final class ContentCache {
+
+    private static volatile ContentCache sInstance;
+
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long mMaxSize;
+    private final long mMaxEntrySize;
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final HashMap<String, Reading> mReadings = new HashMap<>();
+    private long mSize;
+
+    private ContentCache(long maxSize) {
+        mMaxSize = maxSize;
+        mMaxEntrySize = Math.max(1, maxSize / 4);
+    }
+
+    /**
+     * @return 当前缓存，未启用时返回 null
+     */
+    @Nullable
+    static ContentCache get() {
+        return sInstance;
+    }
+
+    static void enable(long maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        sInstance = new ContentCache(maxSize);
+    }
+
+    static void disable() {
+        sInstance = null;
+    }
+
+    /**
+     * 文件被写入，删除或移动时调用，使它的缓存内容失效
+     */
+    static void invalidate(@NonNull String key) {
+        ContentCache cache = sInstance;
+        if (cache != null) cache.remove(key);
+    }
+
+    /**
+     * 目录被删除，清空或移动时调用，使它和所有子路径的缓存内容失效
+     */
+    static void invalidateTree(@NonNull String key) {
+        ContentCache cache = sInstance;
+        if (cache != null) cache.removeTree(key);
+    }
+
+    /**
+     * 开始读取，必须与 {@link #endRead} 成对调用
+     *
+     * @return 路径当前的代数，读取结束时传给 {@link #endRead}
+     */
+    synchronized long beginRead(@NonNull String key) {
+        Reading reading = mReadings.get(key);
+        if (reading == null) {
+            reading = new Reading();
+            mReadings.put(key, reading);
+        }
+        reading.readers++;
+        return reading.generation;
+    }
+
+    /**
+     * @return 与修改时间和长度都匹配的缓存内容，调用方不能修改返回的数组
+     */
+    @Nullable
+    synchronized byte[] get(@NonNull String key, long lastModified, long length) {
+        Entry entry = mEntries.get(key);
+        if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+            mHits.incrementAndGet();
+            return entry.bytes;
+        }
+        if (entry != null) {
+            mEntries.remove(key);
+            mSize -= entry.bytes.length;
+        }
+        mMisses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 结束读取并保存读取到的内容，超过缓存大小四分之一的内容，以及读取开始之后路径发生过失效的内容不缓存
+     *
+     * @param generation 读取之前的 {@link #beginRead}
+     * @param stat       读取之前的文件信息，获取失败时为 null
+     * @param bytes      读取到的内容，读取失败或内容不完整时为 null
+     */
+    synchronized void endRead(@NonNull String key, long generation, @Nullable FileStat stat, @Nullable byte[] bytes) {
+        Reading reading = mReadings.get(key);
+        boolean valid = reading.generation == generation;
+        if (--reading.readers == 0) mReadings.remove(key);
+        if (!valid || stat == null || bytes == null || bytes.length > mMaxEntrySize) return;
+        Entry old = mEntries.put(key, new Entry(stat.lastModified(), stat.length(), bytes));
+        if (old != null) mSize -= old.bytes.length;
+        mSize += bytes.length;
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            mSize -= iterator.next().getValue().bytes.length;
+            iterator.remove();
+        }
+    }
+
+    synchronized void remove(@NonNull String key) {
+        Reading reading = mReadings.get(key);
+        if (reading != null) reading.generation++;
+        Entry entry = mEntries.remove(key);
+        if (entry != null) mSize -= entry.bytes.length;
+    }
+
+    synchronized void removeTree(@NonNull String key) {
+        String prefix = key + File.separator;
+        for (Map.Entry<String, Reading> reading : mReadings.entrySet()) {
+            if (reading.getKey().equals(key) || reading.getKey().startsWith(prefix)) reading.getValue().generation++;
+        }
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (!entry.getKey().equals(key) && !entry.getKey().startsWith(prefix)) continue;
+            mSize -= entry.getValue().bytes.length;
+            iterator.remove();
+        }
+    }
+
+    synchronized long size() {
+        return mSize;
+    }
+
+    long maxSize() {
+        return mMaxSize;
+    }
+
+    long hits() {
+        return mHits.get();
+    }
+
+    long misses() {
+        return mMisses.get();
+    }
+
+    private static final class Reading {
+        int readers;
+        long generation;
+    }
+
+    private static final class Entry {
+        final long lastModified;
+        final long length;
+        final byte[] bytes;
+
+        Entry(long lastModified, long length, byte[] bytes) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Created by lll on 2019/8/12
+ * Email : erleizh@gmail.com
+ * Describe : 并行复制的参数
+ *
+ * @see FileHandle#copyTo(FileHandle, CopyOptions)
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class CopyOptions {
+
+    private int mParallelism = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private Executor mExecutor;
+
+    /**
+     * @param parallelism 同时复制的文件数量，默认为 CPU 核心数（至少为2）
+     * @return CopyOptions
+     */
+    @NonNull
+    public CopyOptions parallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        mParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param executor 执行复制任务的线程池，为 null 时每次复制会创建并在完成后关闭一个大小为 {@link #parallelism()} 的线程池
+     * @return CopyOptions
+     */
+    @NonNull
+    public CopyOptions executor(@Nullable Executor executor) {
+        mExecutor = executor;
+        return this;
+    }
+
+    public int parallelism() {
+        return mParallelism;
+    }
+
+    @Nullable
+    public Executor executor() {
+        return mExecutor;
+    }
+}
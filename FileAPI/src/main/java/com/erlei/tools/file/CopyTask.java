@@ -0,0 +1,241 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by lll on 2019/8/12
+ * Email : erleizh@gmail.com
+ * Describe : 并行复制任务，遍历一次目录树，把文件复制分发到有界的工作线程上。
+ * 单个文件复制失败不会中断任务，所有错误在完成后通过 {@link #errors()} 获取。
+ *
+ * @see FileHandle#copyTo(FileHandle, CopyOptions)
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class CopyTask implements Future<FileHandle> {
+
+    private final FileHandle mSource;
+    private final FileHandle mDest;
+    private final FileHandle mResult;
+    private final int mParallelism;
+    private final Executor mExecutor;
+    private final ExecutorService mOwnedExecutor;
+
+    private final Queue<Entry> mQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<FileOperateException> mErrors = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mWorkers = new AtomicInteger();
+    /**
+     * 尚未完成的文件数量，遍历任务本身也占一个
+     */
+    private final AtomicInteger mPending = new AtomicInteger(1);
+    private final AtomicInteger mCopied = new AtomicInteger();
+    private final CountDownLatch mDone = new CountDownLatch(1);
+    private volatile boolean mCancelled;
+
+    CopyTask(@NonNull FileHandle source, @NonNull FileHandle dest, @NonNull FileHandle result, @NonNull CopyOptions options) {
+        mSource = source;
+        mDest = dest;
+        mResult = result;
+        mParallelism = options.parallelism();
+        if (options.executor() != null) {
+            mExecutor = options.executor();
+            mOwnedExecutor = null;
+        } else {
+            mOwnedExecutor = Executors.newFixedThreadPool(mParallelism);
+            mExecutor = mOwnedExecutor;
+        }
+    }
+
+    CopyTask start() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                walk();
+            }
+        });
+        return this;
+    }
+
+    private void walk() {
+        try {
+            FileStat stat = mSource.stat();
+            if (!stat.isDirectory()) {
+                enqueue(mSource, stat, mDest);
+                return;
+            }
+            Deque<FileHandle[]> stack = new ArrayDeque<>();
+            stack.push(new FileHandle[]{mSource, mDest});
+            while (!stack.isEmpty() && !mCancelled) {
+                FileHandle[] dir = stack.pop();
+                dir[1].mkdirs();
+                if (!dir[1].isDirectory()) {
+                    mErrors.add(new FileOperateException("Destination directory cannot be created: " + dir[1]));
+                    continue;
+                }
+                for (FileHandle child : dir[0].list()) {
+                    FileHandle target = dir[1].child(child.name());
+                    FileStat childStat = child.stat();
+                    if (childStat.isDirectory()) {
+                        stack.push(new FileHandle[]{child, target});
+                    } else {
+                        enqueue(child, childStat, target);
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            mErrors.add(new FileOperateException("Error walking source directory: " + mSource, ex));
+        } finally {
+            finishOne();
+        }
+    }
+
+    private void enqueue(FileHandle source, FileStat stat, FileHandle dest) {
+        mPending.incrementAndGet();
+        mQueue.add(new Entry(source, stat, dest));
+        spawnWorker();
+    }
+
+    private void spawnWorker() {
+        while (true) {
+            int workers = mWorkers.get();
+            if (workers >= mParallelism) return;
+            if (mWorkers.compareAndSet(workers, workers + 1)) break;
+        }
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            });
+        } catch (RuntimeException ex) {
+            //调用方的线程池拒绝执行时在当前线程复制，保证入队的每个文件都会完成
+            work();
+        }
+    }
+
+    private void work() {
+        boolean cancellable = StreamUtils.beginCancellable();
+        try {
+            Entry entry;
+            while ((entry = mQueue.poll()) != null) {
+                try {
+                    if (!mCancelled) {
+                        FileHandle.copyFile(entry.source, entry.stat, entry.dest);
+                        mCopied.incrementAndGet();
+                    }
+                } catch (FileOperateException ex) {
+                    mErrors.add(ex);
+                } catch (RuntimeException ex) {
+                    mErrors.add(new FileOperateException("Error copying file: " + entry.source, ex));
+                } finally {
+                    finishOne();
+                }
+            }
+        } finally {
+            StreamUtils.endCancellable(cancellable);
+            mWorkers.decrementAndGet();
+        }
+        //在退出前有新文件入队，但当时工作线程已满
+        if (!mQueue.isEmpty()) spawnWorker();
+    }
+
+    private void finishOne() {
+        if (mPending.decrementAndGet() == 0) {
+            if (mOwnedExecutor != null) mOwnedExecutor.shutdown();
+            mDone.countDown();
+        }
+    }
+
+    /**
+     * @return 已成功复制的文件数量
+     */
+    public int copiedCount() {
+        return mCopied.get();
+    }
+
+    /**
+     * @return 复制过程中发生的所有错误，任务未完成时返回当前已发生的错误
+     */
+    @NonNull
+    public List<FileOperateException> errors() {
+        return new ArrayList<>(mErrors);
+    }
+
+    /**
+     * 停止分发新的文件，已经开始复制的文件会继续完成
+     *
+     * @return 任务已完成或已经取消过时返回 false
+     */
+    @Override
+    public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+        if (isDone() || mCancelled) return false;
+        mCancelled = true;
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return mDone.getCount() == 0;
+    }
+
+    /**
+     * 等待复制完成
+     *
+     * @return 与 {@link FileHandle#copyTo(FileHandle)} 相同的返回值
+     * @throws ExecutionException 如果有文件复制失败，cause 为汇总的 {@link FileOperateException}
+     */
+    @Override
+    public FileHandle get() throws InterruptedException, ExecutionException {
+        mDone.await();
+        return result();
+    }
+
+    @Override
+    public FileHandle get(long timeout, @NonNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mDone.await(timeout, unit)) throw new TimeoutException();
+        return result();
+    }
+
+    private FileHandle result() throws ExecutionException {
+        if (mCancelled) throw new CancellationException("Copy cancelled: " + mSource);
+        List<FileOperateException> errors = errors();
+        if (errors.isEmpty()) return mResult;
+        FileOperateException ex = new FileOperateException(errors.size() + " error(s) copying " + mSource + " to " + mDest, errors.get(0));
+        for (int i = 1; i < errors.size(); i++) ex.addSuppressed(errors.get(i));
+        throw new ExecutionException(ex);
+    }
+
+    private static final class Entry {
+        final FileHandle source;
+        final FileStat stat;
+        final FileHandle dest;
+
+        Entry(FileHandle source, FileStat stat, FileHandle dest) {
+            this.source = source;
+            this.stat = stat;
+            this.dest = dest;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Created by lll on 2019/8/30
+ * Email : erleizh@gmail.com
+ * Describe : 增量同步，只复制新增或变化的文件。
+ * 文件的大小或修改时间不同即认为发生了变化，复制后把目标文件的修改时间设置为与源文件相同
+ */
+final class DirectorySync {
+
+    private final FileHandle mSource;
+    private final FileHandle mDest;
+    private final SyncOptions mOptions;
+    private final SyncResult mResult = new SyncResult();
+
+    DirectorySync(@NonNull FileHandle source, @NonNull FileHandle dest, @NonNull SyncOptions options) {
+        mSource = source;
+        mDest = dest;
+        mOptions = options;
+    }
+
+    @NonNull
+    SyncResult run() {
+        FileStat stat = mSource.stat();
+        if (!stat.exists()) throw new FileOperateException("Source does not exist: " + mSource);
+        if (!stat.isDirectory()) {
+            syncFile(mSource, stat, mDest);
+            return mResult;
+        }
+        FileStat destStat = mDest.stat();
+        if (destStat.exists() && !destStat.isDirectory())
+            throw new FileOperateException("Destination exists but is not a directory: " + mDest);
+        mDest.mkdirs();
+        final Set<String> sourcePaths = mOptions.deleteExtraneous() ? new HashSet<String>() : null;
+        final int sourcePrefix = mSource.path().length() + 1;
+        mSource.walk(new FileVisitor() {
+            @Override
+            public boolean visit(@NonNull FileHandle file, @NonNull FileStat stat, int depth) {
+                String relative = file.path().substring(sourcePrefix);
+                if (sourcePaths != null) sourcePaths.add(relative);
+                FileHandle target = mDest.child(relative);
+                if (stat.isDirectory()) {
+                    FileStat targetStat = target.stat();
+                    if (targetStat.exists() && !targetStat.isDirectory()) {
+                        deleteExtraneous(target, targetStat);
+                    }
+                    target.mkdirs();
+                } else {
+                    syncFile(file, stat, target);
+                }
+                return true;
+            }
+        });
+        if (sourcePaths != null) {
+            final int destPrefix = mDest.path().length() + 1;
+            mDest.walk(new FileVisitor() {
+                @Override
+                public boolean visit(@NonNull FileHandle file, @NonNull FileStat stat, int depth) {
+                    if (sourcePaths.contains(file.path().substring(destPrefix))) return true;
+                    deleteExtraneous(file, stat);
+                    return false;
+                }
+            });
+        }
+        return mResult;
+    }
+
+    private void syncFile(FileHandle source, FileStat stat, FileHandle dest) {
+        try {
+            FileStat destStat = dest.stat();
+            if (destStat.isDirectory()) {
+                if (!mOptions.deleteExtraneous())
+                    throw new FileOperateException("Destination is a directory: " + dest);
+                deleteExtraneous(dest, destStat);
+            } else if (destStat.exists() && destStat.length() == stat.length()) {
+                if (destStat.lastModified() == stat.lastModified()) {
+                    mResult.unchanged++;
+                    return;
+                }
+                String algorithm = mOptions.digestAlgorithm();
+                if (algorithm != null && Arrays.equals(source.digest(algorithm), dest.digest(algorithm))) {
+                    //noinspection ResultOfMethodCallIgnored
+                    dest.file().setLastModified(stat.lastModified());
+                    mResult.unchanged++;
+                    return;
+                }
+            }
+            FileHandle.copyFile(source, stat, dest);
+            //noinspection ResultOfMethodCallIgnored
+            dest.file().setLastModified(stat.lastModified());
+            mResult.copied++;
+            mResult.copiedBytes += stat.length();
+        } catch (FileOperateException ex) {
+            mResult.errors.add(ex);
+        }
+    }
+
+    private void deleteExtraneous(FileHandle file, FileStat stat) {
+        boolean deleted = stat.isDirectory() ? file.deleteDirectory() : file.delete();
+        if (deleted) {
+            mResult.deleted++;
+        } else {
+            mResult.errors.add(new FileOperateException("Cannot delete extraneous file: " + file));
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Pattern;
+
+/**
+ * Created by lll on 2019/9/2
+ * Email : erleizh@gmail.com
+ * Describe : 有大小限制的 LRU 磁盘缓存。
+ * 所有条目的大小和访问顺序保存在内存索引中，查找不访问文件系统；条目通过临时文件写入，提交时原子地重命名；
+ * 索引的变化追加到日志文件中，启动时通过日志恢复索引，不需要遍历目录；超出大小限制时在后台线程中淘汰最久未使用的条目
+ *
+ * @see FileAPI#diskCache(String, long)
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class DiskCache implements Closeable {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[a-z0-9_-]{1,120}");
+    private static final String JOURNAL = "journal";
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String PUT = "P";
+    private static final String REMOVE = "R";
+    private static final String ACCESS = "A";
+    private static final int COMPACT_THRESHOLD = 2000;
+
+    private static ExecutorService sEvictor;
+
+    private final FileHandle mDirectory;
+    private final long mMaxSize;
+    private final FileHandle mJournalFile;
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> mEditing = new HashSet<>();
+    private AppendWriter mJournal;
+    private long mSize;
+    private int mJournalRedundant;
+    private boolean mEvicting;
+    private boolean mClosed;
+
+    DiskCache(@NonNull FileHandle directory, long maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        mDirectory = directory;
+        mMaxSize = maxSize;
+        mJournalFile = directory.child(JOURNAL);
+        directory.mkdirs();
+        readJournal();
+        reconcileFiles();
+        compactJournal();
+    }
+
+    /**
+     * 在锁内打开条目文件，之后条目被替换，删除或淘汰都不影响读取打开时的内容
+     *
+     * @param key 只能包含 [a-z0-9_-]，长度为 1-120
+     * @return 条目的快照，使用后必须关闭。不存在时返回 null，只通过内存索引判断是否存在
+     */
+    @Nullable
+    public synchronized Snapshot get(@NonNull String key) {
+        checkKey(key);
+        Long size = mClosed ? null : mEntries.get(key);
+        if (size == null) return null;
+        FileInputStream input;
+        try {
+            input = new FileInputStream(entryFile(key).file());
+        } catch (FileNotFoundException ex) {
+            //条目文件被外部删除
+            mEntries.remove(key);
+            mSize -= size;
+            journal(REMOVE, key, -1);
+            return null;
+        }
+        journal(ACCESS, key, -1);
+        return new Snapshot(key, size, input);
+    }
+
+    /**
+     * @return 是否包含此条目
+     */
+    public synchronized boolean contains(@NonNull String key) {
+        checkKey(key);
+        return mEntries.containsKey(key);
+    }
+
+    /**
+     * 写入并提交一个条目
+     *
+     * @param key   只能包含 [a-z0-9_-]，长度为 1-120
+     * @param bytes 条目内容
+     * @return false 如果此条目正在被编辑
+     * @throws FileOperateException 如果写入失败
+     */
+    public boolean put(@NonNull String key, @NonNull byte[] bytes) {
+        Editor editor = edit(key);
+        if (editor == null) return false;
+        try {
+            editor.file().writeBytes(bytes, false);
+            editor.commit();
+            return true;
+        } finally {
+            editor.abort();
+        }
+    }
+
+    /**
+     * 开始编辑一个条目，写入 {@link Editor#file()} 后调用 {@link Editor#commit()} 原子地替换旧条目。
+     * 提交之前其他线程读取到的是旧条目
+     *
+     * @param key 只能包含 [a-z0-9_-]，长度为 1-120
+     * @return Editor，此条目正在被编辑时返回 null
+     */
+    @Nullable
+    public synchronized Editor edit(@NonNull String key) {
+        checkKey(key);
+        checkNotClosed();
+        if (!mEditing.add(key)) return null;
+        return new Editor(key);
+    }
+
+    /**
+     * 删除一个条目
+     *
+     * @return 条目是否存在
+     */
+    public synchronized boolean remove(@NonNull String key) {
+        checkKey(key);
+        checkNotClosed();
+        Long size = mEntries.remove(key);
+        if (size == null) return false;
+        mSize -= size;
+        journal(REMOVE, key, -1);
+        entryFile(key).delete();
+        return true;
+    }
+
+    /**
+     * 删除所有条目
+     */
+    public synchronized void clear() {
+        checkNotClosed();
+        for (String key : new ArrayList<>(mEntries.keySet())) {
+            remove(key);
+        }
+    }
+
+    /**
+     * @return 所有条目的大小之和
+     */
+    public synchronized long size() {
+        return mSize;
+    }
+
+    public long maxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * @return 条目数量
+     */
+    public synchronized int count() {
+        return mEntries.size();
+    }
+
+    @NonNull
+    public FileHandle directory() {
+        return mDirectory;
+    }
+
+    /**
+     * 写入日志并关闭缓存，关闭后不能再写入
+     */
+    @Override
+    public synchronized void close() {
+        if (mClosed) return;
+        mClosed = true;
+        StreamUtils.closeQuietly(mJournal);
+        FileAPI.closeDiskCache(this);
+    }
+
+    private FileHandle entryFile(String key) {
+        return mDirectory.child(key + ENTRY_SUFFIX);
+    }
+
+    private synchronized void commit(String key, FileHandle temp) {
+        mEditing.remove(key);
+        if (mClosed) {
+            temp.delete();
+            throw new FileOperateException("DiskCache already closed: " + mDirectory);
+        }
+        FileHandle entry = entryFile(key);
+        long size = temp.length();
+        boolean renamed = temp.file().renameTo(entry.file());
+        entry.invalidate();
+        if (!renamed) {
+            temp.delete();
+            throw new FileOperateException("Cannot commit cache entry: " + entry);
+        }
+        Long old = mEntries.put(key, size);
+        if (old != null) mSize -= old;
+        mSize += size;
+        journal(PUT, key, size);
+        if (mSize > mMaxSize) scheduleEviction();
+    }
+
+    private synchronized void abort(String key, FileHandle temp) {
+        mEditing.remove(key);
+        temp.delete();
+    }
+
+    /**
+     * 在后台淘汰超出大小限制的条目，并在日志冗余行过多时压缩日志
+     */
+    private void scheduleEviction() {
+        if (mEvicting) return;
+        mEvicting = true;
+        evictor().execute(new Runnable() {
+            @Override
+            public void run() {
+                evict();
+            }
+        });
+    }
+
+    /**
+     * 在锁内删除条目文件，避免删除同一个键在此期间重新提交的文件
+     */
+    private synchronized void evict() {
+        if (mClosed) return;
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (mEditing.contains(entry.getKey())) continue;
+            iterator.remove();
+            mSize -= entry.getValue();
+            journal(REMOVE, entry.getKey(), -1);
+            entryFile(entry.getKey()).delete();
+        }
+        if (mJournalRedundant > COMPACT_THRESHOLD && mJournalRedundant > mEntries.size()) compactJournal();
+        mEvicting = false;
+    }
+
+    /**
+     * PUT 和 REMOVE 立即写入文件，进程崩溃时不会丢失已经提交的条目；ACCESS 只影响淘汰顺序，允许延迟写入
+     */
+    private void journal(String op, String key, long size) {
+        mJournalRedundant++;
+        mJournal.writeLine(size >= 0 ? op + " " + key + " " + size : op + " " + key);
+        if (!ACCESS.equals(op)) mJournal.flush();
+        if (mJournalRedundant > COMPACT_THRESHOLD && mJournalRedundant > mEntries.size()) scheduleEviction();
+    }
+
+    private void readJournal() {
+        if (!mJournalFile.exists()) return;
+        mJournalFile.forEachLine(new LineVisitor() {
+            @Override
+            public boolean visit(@NonNull String line, long number) {
+                String[] parts = line.split(" ");
+                if (parts.length < 2 || !KEY_PATTERN.matcher(parts[1]).matches()) return true;
+                String key = parts[1];
+                if (PUT.equals(parts[0]) && parts.length == 3) {
+                    long size;
+                    try {
+                        size = Long.parseLong(parts[2]);
+                    } catch (NumberFormatException e) {
+                        return true;
+                    }
+                    Long old = mEntries.put(key, size);
+                    if (old != null) mSize -= old;
+                    mSize += size;
+                } else if (REMOVE.equals(parts[0])) {
+                    Long old = mEntries.remove(key);
+                    if (old != null) mSize -= old;
+                } else if (ACCESS.equals(parts[0])) {
+                    mEntries.get(key);
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * 删除临时文件和日志中没有记录的条目文件，并移除索引中文件已经不存在的条目，
+     * 保证磁盘上的文件和索引一致，大小限制不会因为上次异常退出而失效
+     */
+    private void reconcileFiles() {
+        Set<String> present = new HashSet<>();
+        for (FileHandle file : mDirectory.list()) {
+            String name = file.name();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            } else if (name.endsWith(ENTRY_SUFFIX)) {
+                String key = name.substring(0, name.length() - ENTRY_SUFFIX.length());
+                if (mEntries.containsKey(key)) present.add(key);
+                else file.delete();
+            }
+        }
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (present.contains(entry.getKey())) continue;
+            iterator.remove();
+            mSize -= entry.getValue();
+        }
+    }
+
+    /**
+     * 用当前索引按访问顺序重写日志
+     */
+    private void compactJournal() {
+        StreamUtils.closeQuietly(mJournal);
+        StringBuilder builder = new StringBuilder(mEntries.size() * 32);
+        for (Map.Entry<String, Long> entry : mEntries.entrySet()) {
+            builder.append(PUT).append(' ').append(entry.getKey()).append(' ').append(entry.getValue())
+                    .append(FileAPI.LINE_SEPARATOR);
+        }
+        mJournalFile.writeStringAtomic(builder.toString(), "UTF-8", true);
+        mJournal = mJournalFile.appendWriter("UTF-8", AppendWriter.DEFAULT_BUFFER_SIZE, AppendWriter.DEFAULT_FLUSH_INTERVAL);
+        mJournalRedundant = 0;
+    }
+
+    private void checkKey(String key) {
+        if (!KEY_PATTERN.matcher(key).matches())
+            throw new IllegalArgumentException("keys must match regex [a-z0-9_-]{1,120}: \"" + key + "\"");
+    }
+
+    private void checkNotClosed() {
+        if (mClosed) throw new FileOperateException("DiskCache already closed: " + mDirectory);
+    }
+
+    private static synchronized ExecutorService evictor() {
+        if (sEvictor == null) {
+            sEvictor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    Thread thread = new Thread(r, "FileAPI-DiskCache");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sEvictor;
+    }
+
+    /**
+     * 条目的快照，持有打开的条目文件
+     */
+    public static final class Snapshot implements Closeable {
+        private final String mKey;
+        private final long mLength;
+        private final InputStream mInput;
+
+        private Snapshot(String key, long length, InputStream input) {
+            mKey = key;
+            mLength = length;
+            mInput = input;
+        }
+
+        @NonNull
+        public String key() {
+            return mKey;
+        }
+
+        /**
+         * @return 打开时条目的大小
+         */
+        public long length() {
+            return mLength;
+        }
+
+        /**
+         * @return 条目内容的输入流，关闭流等同于关闭快照
+         */
+        @NonNull
+        public InputStream stream() {
+            return mInput;
+        }
+
+        /**
+         * 读取全部内容并关闭快照
+         *
+         * @throws FileOperateException 如果读取失败
+         */
+        @NonNull
+        public byte[] readBytes() {
+            try {
+                return StreamUtils.copyStreamToByteArray(mInput, (int) Math.min(mLength, Integer.MAX_VALUE));
+            } catch (IOException ex) {
+                throw new FileOperateException("Error reading cache entry: " + mKey, ex);
+            } finally {
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            StreamUtils.closeQuietly(mInput);
+        }
+    }
+
+    /**
+     * 条目编辑器，必须调用 {@link #commit()} 或 {@link #abort()} 之一
+     */
+    public final class Editor {
+        private final String mKey;
+        private final FileHandle mTemp;
+        private boolean mDone;
+
+        private Editor(String key) {
+            mKey = key;
+            mTemp = mDirectory.child(key + TEMP_SUFFIX);
+        }
+
+        /**
+         * @return 写入新条目的临时文件
+         */
+        @NonNull
+        public FileHandle file() {
+            return mTemp;
+        }
+
+        /**
+         * @return 覆盖写入临时文件的流
+         */
+        @NonNull
+        public OutputStream write() {
+            return mTemp.write(false);
+        }
+
+        /**
+         * 原子地用临时文件替换旧条目
+         *
+         * @throws FileOperateException 如果临时文件无法重命名
+         */
+        public void commit() {
+            if (mDone) return;
+            mDone = true;
+            if (!mTemp.exists()) {
+                DiskCache.this.abort(mKey, mTemp);
+                return;
+            }
+            DiskCache.this.commit(mKey, mTemp);
+        }
+
+        /**
+         * 丢弃临时文件，提交之后调用没有任何作用
+         */
+        public void abort() {
+            if (mDone) return;
+            mDone = true;
+            DiskCache.this.abort(mKey, mTemp);
+        }
+    }
+}
@@ -2,10 +2,23 @@ package com.erlei.tools.file;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
 import android.os.Environment;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SuppressWarnings({"WeakerAccess", "unused"})
 public class FileAPI {
@@ -26,6 +39,15 @@ public class FileAPI {
     private static String EXTERNAL = null;
     private static String SDCARD = null;
 
+    private static final Map<String, DiskCache> sDiskCaches = new HashMap<>();
+
+    /**
+     * 默认 I/O 线程池的线程数量
+     */
+    public static final int DEFAULT_IO_THREADS = 4;
+
+    private static ExecutorService sIOExecutor;
+
     private FileAPI() {
 
     }
@@ -36,6 +58,48 @@ public class FileAPI {
         INTERNAL = new File(sContext.getDir("", Context.MODE_PRIVATE).getParent(), BASE_DIR).getAbsolutePath();
         EXTERNAL = new File(sContext.getExternalFilesDir(null).getParentFile(), BASE_DIR).getAbsolutePath();
         SDCARD = new File(sdcardWithoutBaseDir(), BASE_DIR).getAbsolutePath();
+        Trash.reap();
+    }
+
+    /**
+     * @return 标识当前安装的 APK 的字符串，APK 更新后会变化，未初始化时返回 null
+     */
+    @Nullable
+    static String versionStamp() {
+        if (sContext == null) return null;
+        try {
+            PackageInfo info = sContext.getPackageManager().getPackageInfo(sContext.getPackageName(), 0);
+            //noinspection deprecation
+            return info.versionCode + "-" + info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return 已初始化的根目录，不包含结尾的分隔符，{@link #init} 之前为 null
+     */
+    @Nullable
+    static String internalRoot() {
+        return INTERNAL;
+    }
+
+    @Nullable
+    static String externalRoot() {
+        return EXTERNAL;
+    }
+
+    @Nullable
+    static String sdcardRoot() {
+        return SDCARD;
+    }
+
+    static List<String> roots() {
+        List<String> roots = new ArrayList<>(3);
+        if (INTERNAL != null) roots.add(INTERNAL);
+        if (EXTERNAL != null) roots.add(EXTERNAL);
+        if (SDCARD != null) roots.add(SDCARD);
+        return roots;
     }
 
 
@@ -195,6 +259,199 @@ public class FileAPI {
         return EXTERNAL + File.separator;
     }
 
+    /**
+     * 设置每个线程缓存的读写缓冲区数量，所有的读写和复制操作都会复用这些缓冲区，0 表示不缓存
+     *
+     * @param poolSize 每个线程缓存的 byte[] 和 char[] 数量，默认为 {@value StreamUtils#DEFAULT_POOL_SIZE}
+     */
+    public static void setBufferPoolSize(int poolSize) {
+        StreamUtils.setPoolSize(poolSize);
+    }
+
+    /**
+     * /data/user/0/[applicationId]/[BASE_DIR]/cache/[name]
+     * <p>
+     * 打开一个有大小限制的 LRU 磁盘缓存，同一个名称返回同一个实例，直到它被关闭
+     *
+     * @param name     缓存名称
+     * @param maxBytes 缓存大小上限，超出时在后台淘汰最久未使用的条目
+     * @return DiskCache
+     */
+    @NonNull
+    public static DiskCache diskCache(@NonNull String name, long maxBytes) {
+        FileHandle directory = internal(CACHE, name);
+        synchronized (sDiskCaches) {
+            DiskCache cache = sDiskCaches.get(directory.path());
+            if (cache == null) {
+                cache = new DiskCache(directory, maxBytes);
+                sDiskCaches.put(directory.path(), cache);
+            }
+            return cache;
+        }
+    }
+
+    static void closeDiskCache(@NonNull DiskCache cache) {
+        synchronized (sDiskCaches) {
+            if (sDiskCaches.get(cache.directory().path()) == cache) sDiskCaches.remove(cache.directory().path());
+        }
+    }
+
+    /**
+     * 设置执行 {@link AsyncFileHandle} 异步操作的线程池。默认是 {@value #DEFAULT_IO_THREADS} 个线程的线程池，空闲时线程会退出。
+     * 被替换的默认线程池会在执行完已提交的任务后关闭，调用方传入的线程池由调用方负责关闭
+     *
+     * @param executor I/O 线程池，null 表示恢复默认线程池
+     */
+    public static void setIOExecutor(@Nullable ExecutorService executor) {
+        ExecutorService old;
+        synchronized (FileAPI.class) {
+            old = sIOExecutor;
+            sIOExecutor = executor;
+        }
+        if (old instanceof DefaultIOExecutor) old.shutdown();
+    }
+
+    @NonNull
+    static synchronized ExecutorService ioExecutor() {
+        if (sIOExecutor == null) sIOExecutor = new DefaultIOExecutor();
+        return sIOExecutor;
+    }
+
+    private static final class DefaultIOExecutor extends ThreadPoolExecutor {
+        DefaultIOExecutor() {
+            super(DEFAULT_IO_THREADS, DEFAULT_IO_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    Thread thread = new Thread(r, "FileAPI-IO-" + mCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * 启用或关闭 I/O 统计。启用后 FileHandle 的读取，写入，复制，列出和删除操作会按根目录记录次数，字节数和耗时分布，
+     * 关闭时几乎没有额外开销
+     *
+     * @param enabled 默认为 false
+     * @see #metricsSnapshot()
+     */
+    public static void setMetricsEnabled(boolean enabled) {
+        IOMetrics.setEnabled(enabled);
+    }
+
+    public static boolean isMetricsEnabled() {
+        return IOMetrics.isEnabled();
+    }
+
+    /**
+     * 设置每次 I/O 操作完成后的回调，只在启用 I/O 统计时调用
+     *
+     * @param listener 为 null 时移除回调
+     */
+    public static void setIOListener(@Nullable IOListener listener) {
+        IOMetrics.setListener(listener);
+    }
+
+    /**
+     * @return 当前 I/O 统计的快照，可以导出到监控系统
+     */
+    @NonNull
+    public static IOMetrics.Snapshot metricsSnapshot() {
+        return IOMetrics.snapshot();
+    }
+
+    /**
+     * 清空 I/O 统计
+     */
+    public static void resetMetrics() {
+        IOMetrics.reset();
+    }
+
+    /**
+     * 设置 {@link FileHandle#writeCompressed()} 等方法默认使用的压缩级别
+     *
+     * @param level 0-9，-1 表示 {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}
+     */
+    public static void setCompressionLevel(int level) {
+        Compression.setLevel(level);
+    }
+
+    /**
+     * 设置 {@link FileHandle#readAt} 和 {@link FileHandle#writeAt} 共享的 FileChannel 的最大数量，超出时关闭最久未使用的通道
+     *
+     * @param maxChannels 默认为 {@value ChannelPool#DEFAULT_MAX_CHANNELS}，0 表示每次读写后关闭通道
+     */
+    public static void setMaxSharedChannels(int maxChannels) {
+        ChannelPool.setMaxChannels(maxChannels);
+    }
+
+    /**
+     * 关闭所有空闲的共享 FileChannel，正在使用的通道在使用完后关闭
+     */
+    public static void closeSharedChannels() {
+        ChannelPool.closeAll();
+    }
+
+    /**
+     * 启用文件内容的内存缓存。启用后 {@link FileHandle#readBytes()} 和 {@link FileHandle#readString()}
+     * 会缓存读取到的内容，文件的修改时间和长度没有变化时直接从内存返回。通过 FileHandle 写入，删除或移动文件时缓存会立即失效
+     *
+     * @param maxBytes 缓存内容的总字节数上限，超过上限时淘汰最久未使用的内容，单个文件超过上限的四分之一时不缓存
+     */
+    public static void enableContentCache(long maxBytes) {
+        ContentCache.enable(maxBytes);
+    }
+
+    /**
+     * 停用并清空文件内容的内存缓存
+     */
+    public static void disableContentCache() {
+        ContentCache.disable();
+    }
+
+    /**
+     * @return 文件内容缓存命中的次数，未启用时返回 0
+     */
+    public static long contentCacheHits() {
+        ContentCache cache = ContentCache.get();
+        return cache == null ? 0 : cache.hits();
+    }
+
+    /**
+     * @return 文件内容缓存未命中的次数，未启用时返回 0
+     */
+    public static long contentCacheMisses() {
+        ContentCache cache = ContentCache.get();
+        return cache == null ? 0 : cache.misses();
+    }
+
+    /**
+     * @return 文件内容缓存当前占用的字节数，未启用时返回 0
+     */
+    public static long contentCacheSize() {
+        ContentCache cache = ContentCache.get();
+        return cache == null ? 0 : cache.size();
+    }
+
+    /**
+     * @return 从缓冲池中直接取得缓冲区的次数
+     */
+    public static long bufferPoolHits() {
+        return StreamUtils.poolHits();
+    }
+
+    /**
+     * @return 缓冲池为空而新分配缓冲区的次数
+     */
+    public static long bufferPoolMisses() {
+        return StreamUtils.poolMisses();
+    }
+
     /**
      * @return baseDir
      * @see #init(Context, String)
@@ -0,0 +1,157 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by lll on 2019/8/28
+ * Email : erleizh@gmail.com
+ * Describe : 文件摘要。
+ * 分块摘要（树摘要）把文件切分为固定大小的块，各块的摘要在多个线程上并行计算，
+ * 最终结果是按顺序拼接所有块摘要之后再计算一次的摘要，与整个文件的普通摘要不同
+ */
+final class FileDigest {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private FileDigest() {
+    }
+
+    @NonNull
+    static MessageDigest newDigest(@NonNull String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new FileOperateException("Unsupported digest algorithm: " + algorithm, e);
+        }
+    }
+
+    /**
+     * 读取流的剩余内容计算摘要，流不会被关闭
+     */
+    @NonNull
+    static byte[] digest(@NonNull InputStream input, @NonNull String algorithm) throws IOException {
+        MessageDigest digest = newDigest(algorithm);
+        byte[] buffer = StreamUtils.obtainByteBuffer();
+        try {
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        } finally {
+            StreamUtils.recycle(buffer);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * 顺序读取流计算分块摘要，结果与 {@link #treeDigest(FileChannel, long, long, String, int, int)} 相同，流不会被关闭
+     */
+    @NonNull
+    static byte[] treeDigest(@NonNull InputStream input, @NonNull String algorithm, int chunkSize) throws IOException {
+        MessageDigest root = newDigest(algorithm);
+        MessageDigest chunk = newDigest(algorithm);
+        byte[] buffer = StreamUtils.obtainByteBuffer();
+        try {
+            long inChunk = 0;
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                int offset = 0;
+                while (offset < count) {
+                    int n = (int) Math.min(count - offset, chunkSize - inChunk);
+                    chunk.update(buffer, offset, n);
+                    offset += n;
+                    inChunk += n;
+                    if (inChunk == chunkSize) {
+                        root.update(chunk.digest());
+                        inChunk = 0;
+                    }
+                }
+            }
+            if (inChunk > 0) root.update(chunk.digest());
+        } finally {
+            StreamUtils.recycle(buffer);
+        }
+        return root.digest();
+    }
+
+    /**
+     * 使用位置读取并行计算通道中指定区域的分块摘要，不会改变通道的位置，通道不会被关闭
+     *
+     * @param offset      区域在通道中的起始位置
+     * @param length      区域长度
+     * @param chunkSize   块大小
+     * @param parallelism 并行计算的线程数
+     */
+    @NonNull
+    static byte[] treeDigest(@NonNull final FileChannel channel, final long offset, final long length, @NonNull final String algorithm,
+                             final int chunkSize, int parallelism) throws IOException {
+        final int chunks = (int) ((length + chunkSize - 1) / chunkSize);
+        final byte[][] digests = new byte[chunks][];
+        final AtomicInteger next = new AtomicInteger();
+        int workers = Math.max(1, Math.min(parallelism, chunks));
+        //在启动线程之前检查算法是否可用
+        newDigest(algorithm);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        MessageDigest digest = newDigest(algorithm);
+                        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+                        int index;
+                        while ((index = next.getAndIncrement()) < chunks) {
+                            long start = (long) index * chunkSize;
+                            long end = Math.min(start + chunkSize, length);
+                            long position = start;
+                            while (position < end) {
+                                buffer.clear();
+                                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                                int count = channel.read(buffer, offset + position);
+                                if (count < 0) throw new IOException("Unexpected end of file at " + position);
+                                digest.update(buffer.array(), 0, count);
+                                position += count;
+                            }
+                            digests[index] = digest.digest();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted computing digest", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        MessageDigest root = newDigest(algorithm);
+        for (byte[] digest : digests) {
+            root.update(digest);
+        }
+        return root.digest();
+    }
+}
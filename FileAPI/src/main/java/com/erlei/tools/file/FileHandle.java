@@ -17,10 +17,17 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
@@ -34,6 +41,16 @@ import static com.erlei.tools.file.FileAPI.LINE_SEPARATOR;
  */
 public class FileHandle {
 
+    /**
+     * 一次性读入数组的最大文件长度，一些虚拟机会在数组头部保留若干字节
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * 共享的通道被其他线程的中断关闭后重新打开的次数
+     */
+    private static final int CHANNEL_RETRIES = 3;
+
     protected File file;
 
     public FileHandle(@NonNull String fileName) {
@@ -110,6 +127,37 @@ public class FileHandle {
         return path.substring(0, dotIndex);
     }
 
+    /**
+     * 通过一次系统调用获取文件的全部属性，需要查询多个属性时比分别调用
+     * {@link #exists()}，{@link #isDirectory()}，{@link #length()}，{@link #lastModified()} 更快
+     *
+     * @return 文件属性快照，目录的 {@link FileStat#length()} 不包含子项的大小
+     */
+    @NonNull
+    public FileStat stat() {
+        return FileStat.of(file);
+    }
+
+    /**
+     * @return 在 I/O 线程池中执行操作的 {@link AsyncFileHandle}
+     * @see FileAPI#setIOExecutor
+     */
+    @NonNull
+    public AsyncFileHandle async() {
+        return new AsyncFileHandle(this);
+    }
+
+    /**
+     * 返回缓存文件属性的句柄，适合在遍历目录或规划复制时反复查询同一个文件的属性
+     *
+     * @return {@link CachedFileHandle}
+     * @see CachedFileHandle#refresh()
+     */
+    @NonNull
+    public FileHandle cached() {
+        return new CachedFileHandle(file);
+    }
+
     /**
      * @return 当文件存在，并且是一个目录时 return true
      */
@@ -209,21 +257,37 @@ public class FileHandle {
     }
 
     /**
+     * 文件长度已知时一次读入全部字节，再用一次解码生成字符串；否则逐块解码。
+     *
      * @param charset 字符集
      * @return 使用指定字符集将整个文件读入字符串。
      * @throws FileOperateException 如果文件句柄表示目录，不存在或无法读取。
      */
     @NonNull
     public String readString(@Nullable String charset) {
-        StringBuilder output = new StringBuilder(estimateLength());
+        ContentCache cache = ContentCache.get();
+        long fileLength = cache == null ? length() : 0;
+        if (cache != null || (fileLength > 0 && fileLength <= MAX_ARRAY_SIZE)) {
+            byte[] bytes = cache != null ? readBytesCached(cache) : readBytes((int) fileLength);
+            try {
+                return charset == null ? new String(bytes) : new String(bytes, charset);
+            } catch (UnsupportedEncodingException ex) {
+                throw new FileOperateException("Error reading file: " + file, ex);
+            }
+        }
+        long start = IOMetrics.start();
+        StringBuilder output = new StringBuilder(512);
         InputStreamReader reader = null;
+        char[] buffer = null;
+        IOMetrics.CountingInputStream counting = null;
         try {
             InputStream stream = read();
+            if (start != 0) stream = counting = new IOMetrics.CountingInputStream(stream);
             if (charset == null)
                 reader = new InputStreamReader(stream);
             else
                 reader = new InputStreamReader(stream, charset);
-            char[] buffer = new char[256];
+            buffer = StreamUtils.obtainCharBuffer();
             while (true) {
                 int length = reader.read(buffer);
                 if (length == -1) break;
@@ -232,11 +296,71 @@ public class FileHandle {
         } catch (IOException ex) {
             throw new FileOperateException("Error reading file: " + file, ex);
         } finally {
+            StreamUtils.recycle(buffer);
             StreamUtils.closeQuietly(reader);
         }
+        if (counting != null) IOMetrics.record(IOMetrics.Operation.READ, this, counting.count, start);
         return output.toString();
     }
 
+    /**
+     * 使用平台的默认字符集逐行读取文件，同一时刻只在内存中保留一行。
+     *
+     * @return LineIterator，读到末尾时自动关闭，提前结束时需要手动关闭
+     * @throws FileOperateException 如果文件句柄表示目录，不存在或无法读取。
+     */
+    @NonNull
+    public LineIterator lines() {
+        return lines(StreamUtils.DEFAULT_BUFFER_SIZE, null);
+    }
+
+    /**
+     * 逐行读取文件，同一时刻只在内存中保留一行。
+     *
+     * @param bufferSize 缓冲区大小
+     * @param charset    可以为null以使用默认字符集。
+     * @return LineIterator，读到末尾时自动关闭，提前结束时需要手动关闭
+     * @throws FileOperateException 如果文件句柄表示目录，不存在或无法读取。
+     */
+    @NonNull
+    public LineIterator lines(int bufferSize, @Nullable String charset) {
+        BufferedReader reader = charset == null ? reader(bufferSize) : reader(bufferSize, charset);
+        return new LineIterator(this, reader);
+    }
+
+    /**
+     * 使用平台的默认字符集逐行读取文件
+     *
+     * @param visitor 每行回调一次，返回 false 时停止读取
+     * @return 读取的行数
+     * @throws FileOperateException 如果文件句柄表示目录，不存在或无法读取。
+     */
+    public long forEachLine(@NonNull LineVisitor visitor) {
+        return forEachLine(StreamUtils.DEFAULT_BUFFER_SIZE, null, visitor);
+    }
+
+    /**
+     * 逐行读取文件
+     *
+     * @param bufferSize 缓冲区大小
+     * @param charset    可以为null以使用默认字符集。
+     * @param visitor    每行回调一次，返回 false 时停止读取
+     * @return 读取的行数
+     * @throws FileOperateException 如果文件句柄表示目录，不存在或无法读取。
+     */
+    public long forEachLine(int bufferSize, @Nullable String charset, @NonNull LineVisitor visitor) {
+        LineIterator lines = lines(bufferSize, charset);
+        long number = 0;
+        try {
+            while (lines.hasNext()) {
+                if (!visitor.visit(lines.next(), number++)) break;
+            }
+        } finally {
+            lines.close();
+        }
+        return number;
+    }
+
     /**
      * 将整个文件读入字节数组。
      *
@@ -245,9 +369,77 @@ public class FileHandle {
      */
     @NonNull
     public byte[] readBytes() {
+        ContentCache cache = ContentCache.get();
+        if (cache != null) return readBytesCached(cache).clone();
+        long length = length();
+        return readBytes(length > 0 && length <= MAX_ARRAY_SIZE ? (int) length : 0);
+    }
+
+    /**
+     * 启用了 {@link FileAPI#enableContentCache(long)} 时，修改时间和长度都没有变化的文件直接返回缓存的内容。
+     * 返回的数组是共享的，调用方不能修改
+     */
+    private byte[] readBytesCached(ContentCache cache) {
+        String key = contentKey();
+        long generation = cache.beginRead(key);
+        FileStat stat = null;
+        byte[] cacheable = null;
+        try {
+            stat = this instanceof AssetFileHandle ? stat() : FileStat.of(file);
+            byte[] bytes = cache.get(key, stat.lastModified(), stat.length());
+            if (bytes != null) return bytes;
+            long length = stat.length();
+            bytes = readBytes(length > 0 && length <= MAX_ARRAY_SIZE ? (int) length : 0);
+            //压缩的资产长度未知，资产不会被修改，按读取到的内容缓存
+            if (bytes.length == length || (length <= 0 && this instanceof AssetFileHandle))
+                cacheable = bytes;
+            return bytes;
+        } finally {
+            cache.endRead(key, generation, stat, cacheable);
+        }
+    }
+
+    /**
+     * 文件或目录被删除或替换时丢弃它和所有子路径的缓存内容和共享的通道，避免继续读写旧文件
+     */
+    void invalidate() {
+        ContentCache.invalidateTree(contentKey());
+        ChannelPool.close(path());
+    }
+
+    /**
+     * @return 文件内容在 {@link ContentCache} 中的键，普通文件使用绝对路径，不同写法的相同路径共享同一个键，asset 与普通文件互不冲突
+     */
+    private String contentKey() {
+        return this instanceof AssetFileHandle ? "asset:" + file.getPath() : path();
+    }
+
+    /**
+     * 文件长度已知时直接读入大小刚好的数组，避免缓冲区复制；读取期间文件长度发生变化时退回到流复制。
+     *
+     * @param length 文件长度，0 表示未知
+     */
+    private byte[] readBytes(int length) {
+        long start = IOMetrics.start();
+        byte[] bytes = readBytesUntracked(length);
+        IOMetrics.record(IOMetrics.Operation.READ, this, bytes.length, start);
+        return bytes;
+    }
+
+    private byte[] readBytesUntracked(int length) {
         InputStream input = read();
         try {
-            return StreamUtils.copyStreamToByteArray(input, estimateLength());
+            if (length <= 0) return StreamUtils.copyStreamToByteArray(input, 512);
+            byte[] bytes = new byte[length];
+            int count = StreamUtils.readFully(input, bytes);
+            if (count < length) return Arrays.copyOf(bytes, count);
+            int next = input.read();
+            if (next == -1) return bytes;
+            StreamUtils.OptimizedByteArrayOutputStream output = new StreamUtils.OptimizedByteArrayOutputStream((int) Math.min(MAX_ARRAY_SIZE, length * 2L));
+            output.write(bytes);
+            output.write(next);
+            StreamUtils.copyStream(input, output);
+            return output.toByteArray();
         } catch (IOException ex) {
             throw new FileOperateException("Error reading file: " + file, ex);
         } finally {
@@ -266,6 +458,7 @@ public class FileHandle {
      * @throws FileOperateException 如果文件句柄表示目录，不存在或无法读取。
      */
     public int readBytes(byte[] bytes, int offset, int size) {
+        long start = IOMetrics.start();
         InputStream input = read();
         int position = 0;
         try {
@@ -279,9 +472,251 @@ public class FileHandle {
         } finally {
             StreamUtils.closeQuietly(input);
         }
+        IOMetrics.record(IOMetrics.Operation.READ, this, position, start);
         return position - offset;
     }
 
+    /**
+     * 从文件的指定位置读取字节，不会改变任何读写位置，可以被多个线程同时调用。
+     * 读取使用 {@link FileAPI} 共享的 FileChannel，反复随机读取同一个文件时不需要每次打开文件。
+     * 共享的通道被其他线程的中断关闭时会重新打开并从中断处继续，只有当前线程被中断时才会失败。
+     *
+     * @param position 文件中的起始位置
+     * @param bytes    要读入的数组
+     * @param offset   数组中的起始偏移量
+     * @param length   要读取的字节数
+     * @return 读取的字节数，只有到达文件末尾时才小于 length
+     * @throws FileOperateException 如果文件句柄表示目录，不存在或无法读取。
+     */
+    public int readAt(long position, @NonNull byte[] bytes, int offset, int length) {
+        return readAt(position, ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * 从文件的指定位置读取字节直到 buffer 被填满或到达文件末尾，see {@link #readAt(long, byte[], int, int)}
+     *
+     * @return 读取的字节数
+     */
+    public int readAt(long position, @NonNull ByteBuffer buffer) {
+        if (position < 0) throw new IllegalArgumentException("position must not be negative: " + position);
+        return readAt(position, buffer, null);
+    }
+
+    /**
+     * @param acquired 调用方已经获取的通道，第一次读取时使用并负责释放；为 null 时获取共享的通道
+     */
+    int readAt(long position, @NonNull ByteBuffer buffer, @Nullable ChannelPool.Channel acquired) {
+        long start = IOMetrics.start();
+        int total = 0;
+        for (int attempt = 0; ; attempt++) {
+            ChannelPool.Channel channel = acquired;
+            acquired = null;
+            try {
+                if (channel == null) channel = acquireChannel(false);
+                int limit = buffer.limit();
+                if (channel.length >= 0)
+                    buffer.limit(buffer.position() + (int) Math.max(0, Math.min(buffer.remaining(), channel.length - position - total)));
+                try {
+                    while (buffer.hasRemaining()) {
+                        int count = channel.channel.read(buffer, channel.offset + position + total);
+                        if (count < 0) break;
+                        total += count;
+                    }
+                } finally {
+                    buffer.limit(limit);
+                }
+                IOMetrics.record(IOMetrics.Operation.READ, this, total, start);
+                return total;
+            } catch (ClosedByInterruptException ex) {
+                throw new FileOperateException("Interrupted while reading file: " + file, ex);
+            } catch (ClosedChannelException ex) {
+                if (attempt >= CHANNEL_RETRIES) throw new FileOperateException("Error reading file: " + file, ex);
+            } catch (IOException ex) {
+                throw new FileOperateException("Error reading file: " + file, ex);
+            } finally {
+                if (channel != null) ChannelPool.release(channel);
+            }
+        }
+    }
+
+    /**
+     * 在文件的指定位置写入字节，不会改变任何读写位置，可以被多个线程同时调用。文件不存在时会被创建，超出文件末尾时文件会被扩展。
+     * 与 {@link #readAt(long, byte[], int, int)} 一样，共享的通道被其他线程的中断关闭时会重新打开并继续写入。
+     *
+     * @param position 文件中的起始位置
+     * @param bytes    数据
+     * @param offset   数据中的起始偏移量
+     * @param length   要写入的字节数
+     * @throws FileOperateException 如果此文件句柄表示目录，或者无法写入
+     */
+    public void writeAt(long position, @NonNull byte[] bytes, int offset, int length) {
+        writeAt(position, ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * 在文件的指定位置写入 buffer 中剩余的全部字节，see {@link #writeAt(long, byte[], int, int)}
+     */
+    public void writeAt(long position, @NonNull ByteBuffer buffer) {
+        if (position < 0) throw new IllegalArgumentException("position must not be negative: " + position);
+        ContentCache.invalidate(contentKey());
+        try {
+            writeToChannel(position, buffer);
+        } finally {
+            ContentCache.invalidate(contentKey());
+        }
+    }
+
+    private void writeToChannel(long position, ByteBuffer buffer) {
+        long start = IOMetrics.start();
+        long offset = position;
+        for (int attempt = 0; ; attempt++) {
+            ChannelPool.Channel channel = null;
+            try {
+                channel = acquireChannel(true);
+                while (buffer.hasRemaining()) {
+                    offset += channel.channel.write(buffer, offset);
+                }
+                IOMetrics.record(IOMetrics.Operation.WRITE, this, offset - position, start);
+                return;
+            } catch (ClosedByInterruptException ex) {
+                throw new FileOperateException("Interrupted while writing file: " + file, ex);
+            } catch (ClosedChannelException ex) {
+                if (attempt >= CHANNEL_RETRIES) throw new FileOperateException("Error writing file: " + file, ex);
+            } catch (IOException ex) {
+                throw new FileOperateException("Error writing file: " + file, ex);
+            } finally {
+                if (channel != null) ChannelPool.release(channel);
+            }
+        }
+    }
+
+    /**
+     * 从共享的通道池中取得此文件的通道，使用完后必须调用 {@link ChannelPool#release}
+     */
+    @NonNull
+    ChannelPool.Channel acquireChannel(final boolean write) throws IOException {
+        if (write) parent().mkdirs();
+        return ChannelPool.acquire(path() + (write ? "#rw" : "#r"), new ChannelPool.Opener() {
+            @NonNull
+            @Override
+            public ChannelPool.Channel open() throws IOException {
+                RandomAccessFile raf = new RandomAccessFile(file(), write ? "rw" : "r");
+                return new ChannelPool.Channel(raf.getChannel(), 0, -1, raf);
+            }
+        });
+    }
+
+    /**
+     * 以只读方式将整个文件映射到内存，读取时不会复制到 Java 堆。
+     *
+     * @return MappedByteBuffer
+     * @throws FileOperateException 如果文件句柄表示目录，不存在，无法读取或者大于 2GB。
+     */
+    @NonNull
+    public MappedByteBuffer map() {
+        return map(FileChannel.MapMode.READ_ONLY);
+    }
+
+    /**
+     * 将整个文件映射到内存。
+     *
+     * @param mode {@link FileChannel.MapMode#READ_WRITE} 时对缓冲区的修改会写回文件
+     * @return MappedByteBuffer
+     * @throws FileOperateException 如果文件句柄表示目录，不存在，无法读取或者大于 2GB。
+     */
+    @NonNull
+    public MappedByteBuffer map(@NonNull FileChannel.MapMode mode) {
+        return map(mode, 0, -1);
+    }
+
+    /**
+     * 以只读方式将文件的指定区域映射到内存。
+     *
+     * @param position 区域在文件中的起始位置
+     * @param size     区域大小
+     * @return MappedByteBuffer
+     * @throws FileOperateException 如果文件句柄表示目录，不存在或无法读取。
+     */
+    @NonNull
+    public MappedByteBuffer map(long position, long size) {
+        return map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     * 将文件的指定区域映射到内存。映射在文件关闭后依然有效，直到缓冲区被回收。
+     *
+     * @param mode     映射模式，{@link FileChannel.MapMode#READ_WRITE} 在区域超出文件末尾时会扩展文件
+     * @param position 区域在文件中的起始位置
+     * @param size     区域大小，-1 表示映射到文件末尾
+     * @return MappedByteBuffer
+     * @throws FileOperateException 如果文件句柄表示目录，不存在或无法读取。
+     */
+    @NonNull
+    public MappedByteBuffer map(@NonNull FileChannel.MapMode mode, long position, long size) {
+        if (mode != FileChannel.MapMode.READ_ONLY) parent().mkdirs();
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file(), mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw");
+            FileChannel channel = raf.getChannel();
+            if (size < 0) size = channel.size() - position;
+            if (position < 0 || size < 0 || size > Integer.MAX_VALUE)
+                throw new FileOperateException("Invalid map region [" + position + ", " + size + "] of file: " + file);
+            return channel.map(mode, position, size);
+        } catch (IOException ex) {
+            if (isDirectory())
+                throw new FileOperateException("Cannot map a directory: " + file, ex);
+            throw new FileOperateException("Error mapping file: " + file, ex);
+        } finally {
+            StreamUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * 流式计算整个文件的摘要，读取时复用缓冲池中的缓冲区
+     *
+     * @param algorithm 摘要算法，例如 MD5，SHA-1，SHA-256
+     * @return 摘要
+     * @throws FileOperateException 如果文件句柄表示目录，不存在，无法读取或者不支持此算法。
+     */
+    @NonNull
+    public byte[] digest(@NonNull String algorithm) {
+        InputStream input = read();
+        try {
+            return FileDigest.digest(input, algorithm);
+        } catch (IOException ex) {
+            throw new FileOperateException("Error reading file: " + file, ex);
+        } finally {
+            StreamUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * 并行计算文件的分块摘要（树摘要）：按 chunkSize 切分文件，各块的摘要在多个线程上通过位置读取并行计算，
+     * 结果为按顺序拼接所有块摘要后再计算的摘要。结果与 {@link #digest(String)} 不同，比较时双方必须使用相同的算法和块大小
+     *
+     * @param algorithm   摘要算法，例如 MD5，SHA-1，SHA-256
+     * @param chunkSize   块大小
+     * @param parallelism 并行计算的线程数
+     * @return 摘要
+     * @throws FileOperateException 如果文件句柄表示目录，不存在，无法读取或者不支持此算法。
+     */
+    @NonNull
+    public byte[] digest(@NonNull String algorithm, int chunkSize, int parallelism) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file(), "r");
+            FileChannel channel = raf.getChannel();
+            return FileDigest.treeDigest(channel, 0, channel.size(), algorithm, chunkSize, parallelism);
+        } catch (IOException ex) {
+            if (isDirectory())
+                throw new FileOperateException("Cannot open a stream to a directory: " + file, ex);
+            throw new FileOperateException("Error reading file: " + file, ex);
+        } finally {
+            StreamUtils.closeQuietly(raf);
+        }
+    }
+
     /**
      * 返回用于写入此文件的流。如有必要，将创建父目录。
      * 文件如果存在则追加写入
@@ -305,7 +740,7 @@ public class FileHandle {
     public OutputStream write(boolean append) {
         parent().mkdirs();
         try {
-            return new FileOutputStream(file(), append);
+            return openOutput(append);
         } catch (Exception ex) {
             if (isDirectory())
                 throw new FileOperateException("Cannot open a stream to a directory: " + file, ex);
@@ -385,7 +820,7 @@ public class FileHandle {
     public Writer writer(boolean append, @Nullable String charset) {
         parent().mkdirs();
         try {
-            FileOutputStream output = new FileOutputStream(file(), append);
+            FileOutputStream output = openOutput(append);
             if (charset == null)
                 return new OutputStreamWriter(output);
             else
@@ -397,6 +832,34 @@ public class FileHandle {
         }
     }
 
+    /**
+     * 打开此文件的输出流并使缓存的内容失效。启用了内容缓存时关闭流之后会再次失效，与写入重叠的读取不会被缓存；
+     * {@link CachedFileHandle} 在关闭流之后清除属性缓存
+     */
+    private FileOutputStream openOutput(boolean append) throws FileNotFoundException {
+        final String key = contentKey();
+        ContentCache.invalidate(key);
+        if (ContentCache.get() == null && !(this instanceof CachedFileHandle))
+            return new FileOutputStream(file(), append);
+        return new FileOutputStream(file(), append) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    ContentCache.invalidate(key);
+                    outputClosed();
+                }
+            }
+        };
+    }
+
+    /**
+     * 通过 {@link #write(boolean)} 或 {@link #writer(boolean, String)} 打开的流关闭之后调用
+     */
+    void outputClosed() {
+    }
+
     /**
      * 将指定的字节写入文件。如有必要，将创建父目录。
      *
@@ -406,39 +869,102 @@ public class FileHandle {
      * @throws FileOperateException 如果此文件句柄表示目录，或者无法写入
      */
     public FileHandle writeBytes(byte[] bytes, boolean append) {
+        return writeBytes(bytes, 0, bytes.length, append);
+    }
+
+    /**
+     * 将指定的字节写入文件。如有必要，将创建父目录。
+     *
+     * @param bytes  数据
+     * @param length 要写入的字节数
+     * @param offset 数据中的起始偏移量
+     * @param append 如果为false，则该文件将被覆盖（如果存在），否则将被追加。
+     * @return FileHandle
+     * @throws FileOperateException 如果此文件句柄表示目录，或者无法写入
+     */
+    public FileHandle writeBytes(byte[] bytes, int offset, int length, boolean append) {
+        long start = IOMetrics.start();
         OutputStream output = write(append);
         try {
-            output.write(bytes);
+            output.write(bytes, offset, length);
         } catch (IOException ex) {
             throw new FileOperateException("Error writing file: " + file, ex);
         } finally {
             StreamUtils.closeQuietly(output);
         }
+        IOMetrics.record(IOMetrics.Operation.WRITE, this, length, start);
         return this;
     }
 
     /**
-     * 将指定的字节写入文件。如有必要，将创建父目录。
+     * 原子地替换文件内容：先写入同目录下的临时文件，再重命名覆盖此文件。
+     * 读取者只会看到旧内容或完整的新内容，写入过程中崩溃不会留下不完整的文件。如有必要，将创建父目录。
+     *
+     * @param bytes bytes
+     * @param sync  重命名之前是否将临时文件同步到磁盘，为 true 时断电后也不会丢失新内容
+     * @return FileHandle
+     * @throws FileOperateException 如果此文件句柄表示目录，或者无法写入
+     */
+    public FileHandle writeBytesAtomic(@NonNull byte[] bytes, boolean sync) {
+        return writeBytesAtomic(bytes, 0, bytes.length, sync);
+    }
+
+    /**
+     * 原子地替换文件内容，see {@link #writeBytesAtomic(byte[], boolean)}
      *
      * @param bytes  数据
-     * @param length 要写入的字节数
      * @param offset 数据中的起始偏移量
-     * @param append 如果为false，则该文件将被覆盖（如果存在），否则将被追加。
+     * @param length 要写入的字节数
+     * @param sync   重命名之前是否将临时文件同步到磁盘
      * @return FileHandle
      * @throws FileOperateException 如果此文件句柄表示目录，或者无法写入
      */
-    public FileHandle writeBytes(byte[] bytes, int offset, int length, boolean append) {
-        OutputStream output = write(append);
+    public FileHandle writeBytesAtomic(@NonNull byte[] bytes, int offset, int length, boolean sync) {
+        if (isDirectory()) throw new FileOperateException("Cannot write to a directory: " + file);
+        long start = IOMetrics.start();
+        FileHandle parent = parent().mkdirs();
+        File temp = null;
+        FileOutputStream output = null;
         try {
+            temp = File.createTempFile("." + name() + "-", ".tmp", parent.file());
+            output = new FileOutputStream(temp);
             output.write(bytes, offset, length);
+            if (sync) output.getFD().sync();
+            output.close();
+            output = null;
+            if (!temp.renameTo(file())) throw new IOException("Unable to rename " + temp + " to " + file);
+            temp = null;
+            invalidate();
+            IOMetrics.record(IOMetrics.Operation.WRITE, this, length, start);
         } catch (IOException ex) {
             throw new FileOperateException("Error writing file: " + file, ex);
         } finally {
             StreamUtils.closeQuietly(output);
+            //noinspection ResultOfMethodCallIgnored
+            if (temp != null) temp.delete();
         }
         return this;
     }
 
+    /**
+     * 使用指定的charset原子地替换文件内容，see {@link #writeBytesAtomic(byte[], boolean)}
+     *
+     * @param string  要写入的字符串
+     * @param charset 可以为null以使用默认字符集。
+     * @param sync    重命名之前是否将临时文件同步到磁盘
+     * @return FileHandle
+     * @throws FileOperateException 如果此文件句柄表示目录，或者无法写入
+     */
+    public FileHandle writeStringAtomic(@NonNull String string, @Nullable String charset, boolean sync) {
+        byte[] bytes;
+        try {
+            bytes = charset == null ? string.getBytes() : string.getBytes(charset);
+        } catch (UnsupportedEncodingException ex) {
+            throw new FileOperateException("Error writing file: " + file, ex);
+        }
+        return writeBytesAtomic(bytes, sync);
+    }
+
     /**
      * 使用默认字符集将指定的字符串写入文件(追加写入)。如有必要，将创建父目录。
      *
@@ -456,8 +982,247 @@ public class FileHandle {
      * @return FileHandle
      */
     public FileHandle writeLine(@NonNull String string) {
-        assert LINE_SEPARATOR != null;
-        return writeString(string, true, null).writeString(LINE_SEPARATOR);
+        return writeString(string + LINE_SEPARATOR, true, null);
+    }
+
+    /**
+     * 使用默认字符集创建一个追加写入器，see {@link #appendWriter(String, int, long)}
+     *
+     * @return AppendWriter
+     */
+    @NonNull
+    public AppendWriter appendWriter() {
+        return appendWriter(null, AppendWriter.DEFAULT_BUFFER_SIZE, AppendWriter.DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * 创建一个长期持有文件的追加写入器，适合频繁地追加写入（例如日志）。
+     * 写入只是追加到内存缓冲区，缓冲区满或达到刷新间隔时才批量写入文件，可以在多个线程之间共享。
+     * 使用完毕后需要调用 {@link AppendWriter#close()}
+     *
+     * @param charset       可以为null以使用默认字符集。
+     * @param bufferSize    缓冲的字符数超过此值时写入文件
+     * @param flushInterval 定时写入文件的间隔（毫秒），小于等于 0 时只在缓冲区满，flush 或 close 时写入
+     * @return AppendWriter
+     */
+    @NonNull
+    public AppendWriter appendWriter(@Nullable String charset, int bufferSize, long flushInterval) {
+        return new AppendWriter(this, charset, bufferSize, flushInterval);
+    }
+
+    /**
+     * 使用默认参数将此文件或目录压缩为 zip 归档，see {@link #zipTo(FileHandle, ZipOptions)}
+     */
+    @NonNull
+    public FileHandle zipTo(@NonNull FileHandle archive) {
+        return zipTo(archive, new ZipOptions());
+    }
+
+    /**
+     * 将此文件或目录压缩为 zip 归档，目录本身不包含在归档中，条目名称是相对于此目录的路径。
+     * 各个文件在线程池中并行压缩，再按顺序写入归档的临时文件，完成后原子地替换 archive。不支持 ZIP64
+     *
+     * @param archive 归档文件，如果存在则被覆盖
+     * @param options 并行度，压缩级别和过滤器
+     * @return archive
+     * @throws FileOperateException 如果此文件不存在，无法读取，或者无法写入归档
+     */
+    @NonNull
+    public FileHandle zipTo(@NonNull FileHandle archive, @NonNull ZipOptions options) {
+        return ZipArchive.zip(this, archive, options);
+    }
+
+    /**
+     * 使用默认参数解压此 zip 归档，see {@link #unzipTo(FileHandle, ZipOptions)}
+     */
+    @NonNull
+    public FileHandle unzipTo(@NonNull FileHandle dir) {
+        return unzipTo(dir, new ZipOptions());
+    }
+
+    /**
+     * 将此 zip 归档解压到指定目录，已存在的文件会被覆盖。所有条目共享一个 {@link java.util.zip.ZipFile}，在线程池中并行解压
+     *
+     * @param dir     目标目录
+     * @param options 并行度和线程池
+     * @return dir
+     * @throws FileOperateException 如果归档无法读取，或者包含指向目标目录之外的条目
+     */
+    @NonNull
+    public FileHandle unzipTo(@NonNull FileHandle dir, @NonNull ZipOptions options) {
+        return ZipArchive.unzip(this, dir, options);
+    }
+
+    /**
+     * 返回解压此 gzip 文件的流，读到末尾时校验 CRC32，解压使用的 Inflater 在流关闭后放回池中复用
+     *
+     * @return InputStream
+     * @throws FileOperateException 如果文件不存在，无法读取或者不是 gzip 格式
+     */
+    @NonNull
+    public InputStream readCompressed() {
+        InputStream input = read();
+        try {
+            return new Compression.GzipInputStream(input);
+        } catch (IOException ex) {
+            StreamUtils.closeQuietly(input);
+            throw new FileOperateException("Error reading file: " + file, ex);
+        }
+    }
+
+    /**
+     * 将 gzip 文件解压为字节数组，输出数组按 gzip 尾部记录的原始长度一次分配
+     *
+     * @throws FileOperateException 如果文件不存在，无法读取或者不是 gzip 格式
+     */
+    @NonNull
+    public byte[] readBytesCompressed() {
+        InputStream input = readCompressed();
+        try {
+            return StreamUtils.copyStreamToByteArray(input, uncompressedSizeHint());
+        } catch (IOException ex) {
+            throw new FileOperateException("Error reading file: " + file, ex);
+        } finally {
+            StreamUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * 将 gzip 文件解压并逐块解码为字符串，不会生成中间的字节数组
+     *
+     * @param charset 可以为null以使用默认字符集。
+     * @throws FileOperateException 如果文件不存在，无法读取或者不是 gzip 格式
+     */
+    @NonNull
+    public String readStringCompressed(@Nullable String charset) {
+        InputStream input = readCompressed();
+        try {
+            return StreamUtils.copyStreamToString(input, uncompressedSizeHint(), charset);
+        } catch (IOException ex) {
+            throw new FileOperateException("Error reading file: " + file, ex);
+        } finally {
+            StreamUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * @return 解压后的长度估计，来自 gzip 尾部
+     */
+    int uncompressedSizeHint() {
+        return Compression.estimateUncompressedSize(file, MAX_ARRAY_SIZE);
+    }
+
+    /**
+     * 使用 {@link FileAPI#setCompressionLevel(int)} 设置的压缩级别，see {@link #writeCompressed(int)}
+     */
+    @NonNull
+    public OutputStream writeCompressed() {
+        return writeCompressed(Compression.level());
+    }
+
+    /**
+     * 返回以 gzip 格式压缩写入此文件的流，文件将被覆盖。close 时写入 gzip 尾部，压缩使用的 Deflater 放回池中复用
+     *
+     * @param level 压缩级别，0-9，-1 表示默认级别
+     * @return OutputStream
+     * @throws FileOperateException 如果此文件句柄表示目录，或者无法写入
+     */
+    @NonNull
+    public OutputStream writeCompressed(int level) {
+        Compression.checkLevel(level);
+        OutputStream output = write(false);
+        try {
+            return new Compression.GzipOutputStream(output, level);
+        } catch (IOException ex) {
+            StreamUtils.closeQuietly(output);
+            throw new FileOperateException("Error writing file: " + file, ex);
+        }
+    }
+
+    /**
+     * 以 gzip 格式压缩写入字节数组，文件将被覆盖
+     *
+     * @return FileHandle
+     * @throws FileOperateException 如果此文件句柄表示目录，或者无法写入
+     */
+    public FileHandle writeCompressed(@NonNull byte[] bytes) {
+        OutputStream output = writeCompressed();
+        try {
+            output.write(bytes);
+            output.close();
+        } catch (IOException ex) {
+            throw new FileOperateException("Error writing file: " + file, ex);
+        } finally {
+            StreamUtils.closeQuietly(output);
+        }
+        return this;
+    }
+
+    /**
+     * 以 gzip 格式压缩写入字符串，编码后的字节直接进入压缩流，文件将被覆盖
+     *
+     * @param charset 可以为null以使用默认字符集。
+     * @return FileHandle
+     * @throws FileOperateException 如果此文件句柄表示目录，或者无法写入
+     */
+    public FileHandle writeStringCompressed(@NonNull String string, @Nullable String charset) {
+        OutputStream output = writeCompressed();
+        Writer writer = null;
+        try {
+            writer = charset == null ? new OutputStreamWriter(output) : new OutputStreamWriter(output, charset);
+            writer.write(string);
+            writer.close();
+        } catch (IOException ex) {
+            throw new FileOperateException("Error writing file: " + file, ex);
+        } finally {
+            StreamUtils.closeQuietly(writer);
+            StreamUtils.closeQuietly(output);
+        }
+        return this;
+    }
+
+    /**
+     * 创建一个分块并行写入此文件的 {@link RangeWriter}，每写入 {@value RangeWriter#DEFAULT_CHECKPOINT_BYTES} 字节保存一次进度，
+     * see {@link #rangeWriter(long, long)}
+     */
+    @NonNull
+    public RangeWriter rangeWriter(long length) {
+        return rangeWriter(length, RangeWriter.DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * 创建一个分块并行写入此文件的 {@link RangeWriter}。数据写入预先分配好长度的 [name].part，
+     * 如果存在与 length 一致的未完成进度，则从上次保存的进度继续
+     *
+     * @param length          文件的最终长度
+     * @param checkpointBytes 每写入多少字节同步并保存一次进度，小于等于 0 时只在 {@link RangeWriter#checkpoint()} 和 close 时保存
+     * @return RangeWriter
+     * @throws FileOperateException 如果无法创建 [name].part
+     */
+    @NonNull
+    public RangeWriter rangeWriter(long length, long checkpointBytes) {
+        return new RangeWriter(this, length, checkpointBytes);
+    }
+
+    /**
+     * 使用默认参数创建滚动日志写入器，see {@link #rollingWriter(RollingOptions)}
+     */
+    @NonNull
+    public RollingFileWriter rollingWriter() {
+        return rollingWriter(new RollingOptions());
+    }
+
+    /**
+     * 创建一个按大小滚动的日志写入器，写入只是放入队列，由一个后台线程批量追加到此文件。
+     * 使用完毕后需要调用 {@link RollingFileWriter#close()}
+     *
+     * @param options 文件大小，历史文件数量，压缩和内存上限
+     * @return RollingFileWriter
+     * @throws FileOperateException 如果此文件句柄表示目录，或者无法写入
+     */
+    @NonNull
+    public RollingFileWriter rollingWriter(@NonNull RollingOptions options) {
+        return new RollingFileWriter(this, options);
     }
 
     /**
@@ -481,15 +1246,24 @@ public class FileHandle {
      * @return FileHandle
      */
     public FileHandle writeString(@NonNull String string, boolean append, @Nullable String charset) {
+        long start = IOMetrics.start();
+        //只在启用统计时统计编码后的字节数
+        IOMetrics.CountingOutputStream counting = null;
         Writer writer = null;
         try {
-            writer = writer(append, charset);
+            if (start != 0) {
+                counting = new IOMetrics.CountingOutputStream(write(append));
+                writer = charset == null ? new OutputStreamWriter(counting) : new OutputStreamWriter(counting, charset);
+            } else {
+                writer = writer(append, charset);
+            }
             writer.write(string);
         } catch (Exception ex) {
             throw new FileOperateException("Error writing file: " + file, ex);
         } finally {
-            StreamUtils.closeQuietly(writer);
+            StreamUtils.closeQuietly(writer != null ? writer : counting);
         }
+        if (counting != null) IOMetrics.record(IOMetrics.Operation.WRITE, this, counting.count, start);
         return this;
     }
 
@@ -507,7 +1281,10 @@ public class FileHandle {
     }
 
     public String[] listPath() {
-        return file.list();
+        long start = IOMetrics.start();
+        String[] paths = file.list();
+        IOMetrics.record(IOMetrics.Operation.LIST, this, 0, start);
+        return paths;
     }
 
     /**
@@ -583,11 +1360,6 @@ public class FileHandle {
         return new FileHandle(parent);
     }
 
-    private int estimateLength() {
-        int length = (int) length();
-        return length != 0 ? length : 512;
-    }
-
 
     /**
      * 删除此文件或空目录并返回成功。不会删除包含子项的目录。
@@ -596,7 +1368,11 @@ public class FileHandle {
      * 已成功删除;否则，<code> false </code>
      */
     public boolean delete() {
-        return file().delete();
+        invalidate();
+        long start = IOMetrics.start();
+        boolean deleted = file().delete();
+        if (deleted) IOMetrics.record(IOMetrics.Operation.DELETE, this, 0, start);
+        return deleted;
     }
 
     /**
@@ -606,9 +1382,42 @@ public class FileHandle {
      * 已成功删除;否则，<code> false </code>
      */
     public boolean deleteDirectory() {
-        return deleteDirectory(file());
+        invalidate();
+        long start = IOMetrics.start();
+        boolean deleted = deleteDirectory(file());
+        if (deleted) IOMetrics.record(IOMetrics.Operation.DELETE, this, 0, start);
+        return deleted;
+    }
+
+
+    /**
+     * 快速删除此文件或目录：将它重命名到所在根目录（internal，external，sdcard）的回收站中，
+     * 由后台线程并行删除，调用方不需要等待。回收站中没删除完的内容会在下次 {@link FileAPI#init} 时继续删除。
+     * 不在任何根目录下的文件会同步删除。
+     *
+     * @return <code> true </code>当且仅当文件或目录已被移入回收站或已成功删除
+     */
+    public boolean deleteInBackground() {
+        if (!exists()) return false;
+        invalidate();
+        long start = IOMetrics.start();
+        if (!Trash.recycle(file())) return deleteDirectory();
+        IOMetrics.record(IOMetrics.Operation.DELETE, this, 0, start);
+        return true;
     }
 
+    /**
+     * 快速清空此目录：将它重命名到回收站后重新创建一个空目录，see {@link #deleteInBackground()}
+     */
+    public void emptyDirectoryInBackground() {
+        if (!isDirectory()) return;
+        invalidate();
+        if (Trash.recycle(file())) {
+            mkdirs();
+        } else {
+            emptyDirectory(file(), false);
+        }
+    }
 
     /**
      * 以递归方式删除此目录的所有子项。
@@ -623,6 +1432,7 @@ public class FileHandle {
      * @param preserveTree 保留文件夹结构
      */
     public void emptyDirectory(boolean preserveTree) {
+        invalidate();
         emptyDirectory(file(), preserveTree);
     }
 
@@ -643,13 +1453,15 @@ public class FileHandle {
      * @return dest FileHandle
      */
     public FileHandle copyTo(@NonNull FileHandle dest) {
-        if (!isDirectory()) {
-            if (dest.isDirectory()) dest = dest.child(name());
-            copyFile(this, dest);
+        FileStat stat = stat();
+        FileStat destStat = dest.stat();
+        if (!stat.isDirectory()) {
+            if (destStat.isDirectory()) dest = dest.child(name());
+            copyFile(this, stat, dest);
             return dest;
         }
-        if (dest.exists()) {
-            if (!dest.isDirectory())
+        if (destStat.exists()) {
+            if (!destStat.isDirectory())
                 throw new FileOperateException("Destination exists but is not a directory: " + dest);
         } else {
             dest.mkdirs();
@@ -660,6 +1472,60 @@ public class FileHandle {
         return dest;
     }
 
+    /**
+     * 并行地将此文件或目录复制到指定的文件或目录，目标路径的规则与 {@link #copyTo(FileHandle)} 相同。
+     * 目录树只遍历一次，文件复制分发到 {@link CopyOptions#parallelism()} 个工作线程上，
+     * 单个文件复制失败不会中断其余文件的复制。
+     *
+     * @param dest    目标路径
+     * @param options 并行参数
+     * @return 复制任务，完成后返回与 {@link #copyTo(FileHandle)} 相同的 FileHandle
+     * @throws FileOperateException 如果目标目录无法创建
+     */
+    @NonNull
+    public CopyTask copyTo(@NonNull FileHandle dest, @NonNull CopyOptions options) {
+        FileStat destStat = dest.stat();
+        if (!isDirectory()) {
+            if (destStat.isDirectory()) dest = dest.child(name());
+            return new CopyTask(this, dest, dest, options).start();
+        }
+        if (destStat.exists()) {
+            if (!destStat.isDirectory())
+                throw new FileOperateException("Destination exists but is not a directory: " + dest);
+        } else {
+            dest.mkdirs();
+            if (!dest.isDirectory())
+                throw new FileOperateException("Destination directory cannot be created: " + dest);
+        }
+        return new CopyTask(this, dest.child(name()), dest, options).start();
+    }
+
+    /**
+     * 增量同步，使用默认参数，see {@link #syncTo(FileHandle, SyncOptions)}
+     *
+     * @param dest 目标路径
+     * @return 同步结果
+     */
+    @NonNull
+    public SyncResult syncTo(@NonNull FileHandle dest) {
+        return syncTo(dest, new SyncOptions());
+    }
+
+    /**
+     * 将此目录的内容增量同步到目标目录（此句柄是文件时同步为 dest 文件），只复制新增或大小，修改时间发生变化的文件，
+     * 可选地删除目标目录中多余的文件。与 {@link #copyTo(FileHandle)} 不同，目标目录本身就是此目录的镜像。
+     * 单个文件失败不会中断同步，错误记录在结果中
+     *
+     * @param dest    目标路径
+     * @param options 同步参数
+     * @return 同步结果
+     * @throws FileOperateException 如果源路径不存在或者目标路径不是目录
+     */
+    @NonNull
+    public SyncResult syncTo(@NonNull FileHandle dest, @NonNull SyncOptions options) {
+        return new DirectorySync(this, dest, options).run();
+    }
+
     public boolean exists() {
         return file.exists();
     }
@@ -671,6 +1537,8 @@ public class FileHandle {
      * @return dest FileHandle
      */
     public FileHandle moveTo(FileHandle dest) {
+        invalidate();
+        dest.invalidate();
         if (file().renameTo(dest.file())) return dest;
         copyTo(dest);
         delete();
@@ -680,17 +1548,40 @@ public class FileHandle {
 
     /**
      * @return 如果是文件，返回文件大小，如果是文件夹，返回文件夹的大小
+     * @see #walkSize(WalkOptions)
      */
     public long length() {
-        long len = 0;
-        if (isDirectory()) {
-            for (FileHandle fileHandle : list()) {
-                len += fileHandle.length();
-            }
-        } else {
-            return file().length();
-        }
-        return len;
+        return walkSize(new WalkOptions());
+    }
+
+    /**
+     * 遍历此目录下的所有文件和目录，不包含此目录本身。
+     * 使用显式栈代替递归，不受目录深度限制，每一项只获取一次文件属性。
+     *
+     * @param visitor 每一项回调一次
+     * @return 访问的项数
+     */
+    public long walk(@NonNull FileVisitor visitor) {
+        return walk(new WalkOptions(), visitor);
+    }
+
+    /**
+     * 遍历此目录下的所有文件和目录，不包含此目录本身。
+     *
+     * @param options 最大深度，过滤器和并行度
+     * @param visitor 每一项回调一次，并行遍历时需要线程安全
+     * @return 访问的项数
+     */
+    public long walk(@NonNull WalkOptions options, @NonNull FileVisitor visitor) {
+        return FileWalker.walk(this, options, visitor);
+    }
+
+    /**
+     * @param options 最大深度，过滤器和并行度
+     * @return 如果是文件，返回文件大小，如果是目录，返回满足条件的所有文件的大小之和
+     */
+    public long walkSize(@NonNull WalkOptions options) {
+        return FileWalker.size(this, options);
     }
 
     /**
@@ -769,24 +1660,55 @@ public class FileHandle {
         return file.delete();
     }
 
-    static private void copyFile(FileHandle source, FileHandle dest) {
+    /**
+     * 复制单个文件。普通文件和未压缩的资产使用 {@link java.nio.channels.FileChannel#transferTo} 由内核完成零拷贝，
+     * 压缩的资产或非常规文件（管道，设备等）退回到流复制。
+     *
+     * @param sourceStat 调用方已经获取的源文件属性，避免重复的 stat
+     */
+    static void copyFile(FileHandle source, FileStat sourceStat, FileHandle dest) {
+        long start = IOMetrics.start();
         try {
-            dest.write(source.read(), false);
+            if (source instanceof AssetFileHandle) {
+                if (!((AssetFileHandle) source).transferTo(dest)) dest.write(source.read(), false);
+            } else if (!sourceStat.isFile()) {
+                dest.write(source.read(), false);
+            } else {
+                transferFile(source, dest);
+            }
+            IOMetrics.record(IOMetrics.Operation.COPY, source, sourceStat.length(), start);
         } catch (Exception ex) {
             throw new FileOperateException("Error copying source file: " + source.file + "\n" //
                     + "To destination: " + dest.file, ex);
         }
     }
 
+    static private void transferFile(FileHandle source, FileHandle dest) throws IOException {
+        FileInputStream input = new FileInputStream(source.file());
+        OutputStream output = null;
+        try {
+            output = dest.write(false);
+            if (output instanceof FileOutputStream) {
+                StreamUtils.copyChannel(input.getChannel(), ((FileOutputStream) output).getChannel());
+            } else {
+                StreamUtils.copyStream(input, output);
+            }
+        } finally {
+            StreamUtils.closeQuietly(input);
+            StreamUtils.closeQuietly(output);
+        }
+    }
+
     static private void copyDirectory(FileHandle sourceDir, FileHandle destDir) {
         destDir.mkdirs();
         List<FileHandle> files = sourceDir.list();
         for (FileHandle srcFile : files) {
             FileHandle destFile = destDir.child(srcFile.name());
-            if (srcFile.isDirectory())
+            FileStat stat = srcFile.stat();
+            if (stat.isDirectory())
                 copyDirectory(srcFile, destFile);
             else
-                copyFile(srcFile, destFile);
+                copyFile(srcFile, stat, destFile);
         }
     }
 
@@ -0,0 +1,144 @@
+package com.erlei.tools.file;
+
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Created by lll on 2019/8/19
+ * Email : erleizh@gmail.com
+ * Describe : 文件属性快照，创建后不会再变化。
+ * 普通文件通过一次 stat 系统调用获取全部属性，而不是 exists()，isDirectory()，length()，lastModified() 各调用一次
+ *
+ * @see FileHandle#stat()
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class FileStat {
+
+    static final FileStat MISSING = new FileStat(false, false, false, 0, 0);
+
+    /**
+     * android.system.Os 在 API 21 之前不可用；在 JVM 上编译自 android.jar 时类存在，但调用会抛出 "Stub!"，
+     * 启动时探测一次，避免之后每次调用都构造异常
+     */
+    private static final boolean OS_STAT_AVAILABLE = isOsStatAvailable();
+
+    private final boolean mExists;
+    private final boolean mDirectory;
+    private final boolean mFile;
+    private final long mLength;
+    private final long mLastModified;
+
+    FileStat(boolean exists, boolean directory, boolean file, long length, long lastModified) {
+        mExists = exists;
+        mDirectory = directory;
+        mFile = file;
+        mLength = length;
+        mLastModified = lastModified;
+    }
+
+    @NonNull
+    static FileStat of(@NonNull File file) {
+        if (OS_STAT_AVAILABLE) {
+            try {
+                StructStat stat = Os.stat(file.getPath());
+                return new FileStat(true, OsConstants.S_ISDIR(stat.st_mode), OsConstants.S_ISREG(stat.st_mode),
+                        stat.st_size, lastModified(file, stat));
+            } catch (ErrnoException e) {
+                if (e.errno == OsConstants.ENOENT || e.errno == OsConstants.ENOTDIR) return MISSING;
+            } catch (RuntimeException ignored) {
+            }
+        }
+        long lastModified = file.lastModified();
+        if (lastModified == 0 && !file.exists()) return MISSING;
+        boolean directory = file.isDirectory();
+        return new FileStat(true, directory, !directory && file.isFile(), file.length(), lastModified);
+    }
+
+    /**
+     * st_mtime 只精确到秒，API 27 开始使用 st_mtim 获取毫秒精度，之前的版本使用与 {@link File#lastModified()} 相同的结果，
+     * 保证与 {@link FileHandle#lastModified()} 一致，同一秒内的修改也能被检测到
+     */
+    private static long lastModified(File file, StructStat stat) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1)
+            return stat.st_mtim.tv_sec * 1000L + stat.st_mtim.tv_nsec / 1000000L;
+        return file.lastModified();
+    }
+
+    private static boolean isOsStatAvailable() {
+        try {
+            return Os.stat("/") != null;
+        } catch (ErrnoException e) {
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return 获取快照时文件或目录是否存在
+     */
+    public boolean exists() {
+        return mExists;
+    }
+
+    /**
+     * @return 获取快照时是否是一个目录
+     */
+    public boolean isDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * @return 获取快照时是否是一个普通文件
+     */
+    public boolean isFile() {
+        return mFile;
+    }
+
+    /**
+     * @return 文件大小，目录的大小由文件系统决定，不包含子项的大小
+     */
+    public long length() {
+        return mLength;
+    }
+
+    /**
+     * @return 最后修改时间（毫秒），不存在时返回 0
+     */
+    public long lastModified() {
+        return mLastModified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FileStat that = (FileStat) o;
+        return mExists == that.mExists && mDirectory == that.mDirectory && mFile == that.mFile
+                && mLength == that.mLength && mLastModified == that.mLastModified;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (mExists ? 1 : 0);
+        result = 31 * result + (mDirectory ? 1 : 0);
+        result = 31 * result + (mFile ? 1 : 0);
+        result = 31 * result + (int) (mLength ^ (mLength >>> 32));
+        result = 31 * result + (int) (mLastModified ^ (mLastModified >>> 32));
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.getDefault(), "FileStat{exists=%b, directory=%b, file=%b, length=%d, lastModified=%d}",
+                mExists, mDirectory, mFile, mLength, mLastModified);
+    }
+}
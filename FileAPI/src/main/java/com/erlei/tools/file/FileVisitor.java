@@ -0,0 +1,21 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Created by lll on 2019/8/21
+ * Email : erleizh@gmail.com
+ * Describe : 遍历目录树的回调，并行遍历时会在多个线程上同时回调
+ *
+ * @see FileHandle#walk(WalkOptions, FileVisitor)
+ */
+public interface FileVisitor {
+
+    /**
+     * @param file  当前文件或目录
+     * @param stat  当前文件或目录的属性
+     * @param depth 深度，目录的直接子项为 1
+     * @return 当前项是目录时，返回 false 跳过它的所有子项
+     */
+    boolean visit(@NonNull FileHandle file, @NonNull FileStat stat, int depth);
+}
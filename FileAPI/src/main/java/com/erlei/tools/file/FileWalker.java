@@ -0,0 +1,196 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by lll on 2019/8/21
+ * Email : erleizh@gmail.com
+ * Describe : 非递归的目录树遍历，使用显式栈代替方法递归，每一项只获取一次 {@link FileStat}。
+ * 并行遍历时只在线程池空闲时拆分子目录，其余子目录留在当前任务的栈中处理
+ */
+final class FileWalker {
+
+    /**
+     * 线程池中排队的任务少于此值时才把子目录拆分为新任务
+     */
+    private static final int SURPLUS_THRESHOLD = 2;
+
+    private FileWalker() {
+    }
+
+    static long walk(@NonNull FileHandle root, @NonNull WalkOptions options, @NonNull FileVisitor visitor) {
+        if (options.parallelism() <= 1) {
+            Deque<Node> stack = new ArrayDeque<>();
+            stack.push(new Node(root, 0));
+            return walk(stack, options, visitor, null);
+        }
+        ForkJoinPool pool = new ForkJoinPool(options.parallelism());
+        try {
+            return pool.invoke(new WalkTask(new Node(root, 0), options, visitor));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static long size(@NonNull FileHandle root, @NonNull WalkOptions options) {
+        if (root instanceof AssetFileHandle) {
+            final AtomicLong size = new AtomicLong();
+            walk(root, options, new FileVisitor() {
+                @Override
+                public boolean visit(@NonNull FileHandle file, @NonNull FileStat stat, int depth) {
+                    if (!stat.isDirectory()) size.addAndGet(stat.length());
+                    return true;
+                }
+            });
+            return size.get();
+        }
+        FileStat stat = FileStat.of(root.file());
+        if (!stat.isDirectory()) return stat.length();
+        if (options.parallelism() <= 1) {
+            Deque<FileNode> stack = new ArrayDeque<>();
+            stack.push(new FileNode(root.file(), 0));
+            return size(stack, options, null);
+        }
+        ForkJoinPool pool = new ForkJoinPool(options.parallelism());
+        try {
+            return pool.invoke(new SizeTask(new FileNode(root.file(), 0), options));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 处理栈中的目录，直到栈为空
+     *
+     * @param forks 不为 null 时把部分子目录拆分为新任务并加入此列表，由调用方 join
+     * @return 访问的项数
+     */
+    private static long walk(Deque<Node> stack, WalkOptions options, FileVisitor visitor, List<ForkJoinTask<Long>> forks) {
+        FileFilter filter = options.filter();
+        long count = 0;
+        while (!stack.isEmpty()) {
+            Node dir = stack.pop();
+            if (dir.depth >= options.maxDepth()) continue;
+            String[] names = dir.handle.listPath();
+            if (names == null) continue;
+            for (String name : names) {
+                FileHandle child = dir.handle.child(name);
+                if (filter != null && !filter.accept(child.file())) continue;
+                FileStat stat = child.stat();
+                count++;
+                if (!visitor.visit(child, stat, dir.depth + 1) || !stat.isDirectory()) continue;
+                Node node = new Node(child, dir.depth + 1);
+                if (forks != null && ForkJoinTask.getSurplusQueuedTaskCount() < SURPLUS_THRESHOLD) {
+                    forks.add(new WalkTask(node, options, visitor).fork());
+                } else {
+                    stack.push(node);
+                }
+            }
+        }
+        return count;
+    }
+
+    private static long size(Deque<FileNode> stack, WalkOptions options, List<ForkJoinTask<Long>> forks) {
+        FileFilter filter = options.filter();
+        long size = 0;
+        while (!stack.isEmpty()) {
+            FileNode dir = stack.pop();
+            if (dir.depth >= options.maxDepth()) continue;
+            String[] names = dir.file.list();
+            if (names == null) continue;
+            for (String name : names) {
+                File child = new File(dir.file, name);
+                if (filter != null && !filter.accept(child)) continue;
+                FileStat stat = FileStat.of(child);
+                if (!stat.isDirectory()) {
+                    size += stat.length();
+                    continue;
+                }
+                FileNode node = new FileNode(child, dir.depth + 1);
+                if (forks != null && ForkJoinTask.getSurplusQueuedTaskCount() < SURPLUS_THRESHOLD) {
+                    forks.add(new SizeTask(node, options).fork());
+                } else {
+                    stack.push(node);
+                }
+            }
+        }
+        return size;
+    }
+
+    private static final class Node {
+        final FileHandle handle;
+        final int depth;
+
+        Node(FileHandle handle, int depth) {
+            this.handle = handle;
+            this.depth = depth;
+        }
+    }
+
+    private static final class FileNode {
+        final File file;
+        final int depth;
+
+        FileNode(File file, int depth) {
+            this.file = file;
+            this.depth = depth;
+        }
+    }
+
+    private static final class WalkTask extends RecursiveTask<Long> {
+        private final Node mNode;
+        private final WalkOptions mOptions;
+        private final FileVisitor mVisitor;
+
+        WalkTask(Node node, WalkOptions options, FileVisitor visitor) {
+            mNode = node;
+            mOptions = options;
+            mVisitor = visitor;
+        }
+
+        @Override
+        protected Long compute() {
+            Deque<Node> stack = new ArrayDeque<>();
+            stack.push(mNode);
+            List<ForkJoinTask<Long>> forks = new ArrayList<>();
+            long count = walk(stack, mOptions, mVisitor, forks);
+            for (ForkJoinTask<Long> fork : forks) {
+                count += fork.join();
+            }
+            return count;
+        }
+    }
+
+    private static final class SizeTask extends RecursiveTask<Long> {
+        private final FileNode mNode;
+        private final WalkOptions mOptions;
+
+        SizeTask(FileNode node, WalkOptions options) {
+            mNode = node;
+            mOptions = options;
+        }
+
+        @Override
+        protected Long compute() {
+            Deque<FileNode> stack = new ArrayDeque<>();
+            stack.push(mNode);
+            List<ForkJoinTask<Long>> forks = new ArrayList<>();
+            long size = size(stack, mOptions, forks);
+            for (ForkJoinTask<Long> fork : forks) {
+                size += fork.join();
+            }
+            return size;
+        }
+    }
+}
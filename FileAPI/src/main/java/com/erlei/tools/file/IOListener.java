@@ -0,0 +1,23 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Created by lll on 2019/9/18
+ * Email : erleizh@gmail.com
+ * Describe : I/O 操作的回调，在执行操作的线程上同步调用，实现应当尽量轻量
+ *
+ * @see FileAPI#setIOListener(IOListener)
+ */
+public interface IOListener {
+
+    /**
+     * @param operation 操作类型
+     * @param root      文件所在的根目录
+     * @param file      操作的文件，复制时为源文件
+     * @param bytes     读取或写入的字节数，列出和删除为 0
+     * @param nanos     耗时（纳秒）
+     */
+    void onOperation(@NonNull IOMetrics.Operation operation, @NonNull IOMetrics.Root root, @NonNull FileHandle file,
+                     long bytes, long nanos);
+}
@@ -0,0 +1,318 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Created by lll on 2019/9/18
+ * Email : erleizh@gmail.com
+ * Describe : I/O 统计，按操作类型和根目录分别记录次数，字节数，总耗时和耗时分布。
+ * 默认关闭，关闭时每个操作只多读一次 volatile 变量；只记录成功的操作
+ *
+ * @see FileAPI#setMetricsEnabled(boolean)
+ * @see FileAPI#metricsSnapshot()
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class IOMetrics {
+
+    /**
+     * 耗时分布的桶数量，第 i 个桶记录耗时在 [2^(i-1), 2^i) 微秒之间的操作，第 0 个桶记录小于 1 微秒的操作，最后一个桶包含所有更慢的操作
+     */
+    public static final int HISTOGRAM_BUCKETS = 32;
+
+    public enum Operation {
+        READ, WRITE, COPY, LIST, DELETE
+    }
+
+    public enum Root {
+        INTERNAL, EXTERNAL, SDCARD, ASSETS, OTHER
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final Root[] ROOTS = Root.values();
+    private static final Counter[] sCounters = new Counter[OPERATIONS.length * ROOTS.length];
+    private static volatile boolean sEnabled;
+    private static volatile IOListener sListener;
+
+    static {
+        for (int i = 0; i < sCounters.length; i++) sCounters[i] = new Counter();
+    }
+
+    private IOMetrics() {
+    }
+
+    static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    static void setListener(@Nullable IOListener listener) {
+        sListener = listener;
+    }
+
+    /**
+     * @return 开始时间，未启用时返回 0，此时 {@link #record} 不做任何事
+     */
+    static long start() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    static void record(@NonNull Operation operation, @NonNull FileHandle file, long bytes, long start) {
+        if (start == 0) return;
+        long nanos = System.nanoTime() - start;
+        Root root = root(file);
+        sCounters[operation.ordinal() * ROOTS.length + root.ordinal()].add(bytes, nanos);
+        IOListener listener = sListener;
+        if (listener != null) listener.onOperation(operation, root, file, bytes, nanos);
+    }
+
+    static void reset() {
+        for (Counter counter : sCounters) counter.reset();
+    }
+
+    @NonNull
+    static Snapshot snapshot() {
+        List<Stat> stats = new ArrayList<>();
+        for (Operation operation : OPERATIONS) {
+            for (Root root : ROOTS) {
+                Stat stat = sCounters[operation.ordinal() * ROOTS.length + root.ordinal()].snapshot(operation, root);
+                if (stat.count() > 0) stats.add(stat);
+            }
+        }
+        return new Snapshot(stats);
+    }
+
+    private static Root root(FileHandle file) {
+        if (file instanceof AssetFileHandle) return Root.ASSETS;
+        String path = file.file().getAbsolutePath();
+        if (isUnder(path, FileAPI.internalRoot())) return Root.INTERNAL;
+        if (isUnder(path, FileAPI.externalRoot())) return Root.EXTERNAL;
+        if (isUnder(path, FileAPI.sdcardRoot())) return Root.SDCARD;
+        return Root.OTHER;
+    }
+
+    private static boolean isUnder(String path, String root) {
+        return root != null && path.startsWith(root)
+                && (path.length() == root.length() || path.charAt(root.length()) == File.separatorChar || root.endsWith(File.separator));
+    }
+
+    static int bucket(long nanos) {
+        long micros = nanos / 1000;
+        return Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    private static final class Counter {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong nanos = new AtomicLong();
+        final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+        void add(long bytes, long nanos) {
+            this.count.incrementAndGet();
+            if (bytes > 0) this.bytes.addAndGet(bytes);
+            this.nanos.addAndGet(nanos);
+            histogram.incrementAndGet(bucket(nanos));
+        }
+
+        void reset() {
+            count.set(0);
+            bytes.set(0);
+            nanos.set(0);
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) histogram.set(i, 0);
+        }
+
+        Stat snapshot(Operation operation, Root root) {
+            long[] buckets = new long[HISTOGRAM_BUCKETS];
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) buckets[i] = histogram.get(i);
+            return new Stat(operation, root, count.get(), bytes.get(), nanos.get(), buckets);
+        }
+    }
+
+    /**
+     * 某一种操作在某一个根目录下的统计
+     */
+    public static final class Stat {
+        private final Operation mOperation;
+        private final Root mRoot;
+        private final long mCount;
+        private final long mBytes;
+        private final long mNanos;
+        private final long[] mHistogram;
+
+        Stat(Operation operation, Root root, long count, long bytes, long nanos, long[] histogram) {
+            mOperation = operation;
+            mRoot = root;
+            mCount = count;
+            mBytes = bytes;
+            mNanos = nanos;
+            mHistogram = histogram;
+        }
+
+        @NonNull
+        public Operation operation() {
+            return mOperation;
+        }
+
+        @NonNull
+        public Root root() {
+            return mRoot;
+        }
+
+        public long count() {
+            return mCount;
+        }
+
+        public long bytes() {
+            return mBytes;
+        }
+
+        public long totalNanos() {
+            return mNanos;
+        }
+
+        /**
+         * @return 耗时分布，see {@link #HISTOGRAM_BUCKETS}
+         */
+        @NonNull
+        public long[] histogram() {
+            return mHistogram.clone();
+        }
+
+        /**
+         * @param quantile 0-1
+         * @return 耗时分位数的上界（微秒），由耗时分布估算
+         */
+        public long percentileMicros(double quantile) {
+            long target = (long) Math.ceil(mCount * quantile);
+            long seen = 0;
+            for (int i = 0; i < mHistogram.length; i++) {
+                seen += mHistogram[i];
+                if (seen >= target && seen > 0) return i == 0 ? 1 : 1L << i;
+            }
+            return 1L << (mHistogram.length - 1);
+        }
+
+        @Override
+        public String toString() {
+            return mOperation + "/" + mRoot + "{count=" + mCount + ", bytes=" + mBytes
+                    + ", avgMicros=" + (mCount == 0 ? 0 : mNanos / mCount / 1000) + ", p99Micros<=" + percentileMicros(0.99) + "}";
+        }
+    }
+
+    /**
+     * 某一时刻的统计快照，只包含发生过的操作
+     */
+    public static final class Snapshot {
+        private final List<Stat> mStats;
+
+        Snapshot(List<Stat> stats) {
+            mStats = Collections.unmodifiableList(stats);
+        }
+
+        @NonNull
+        public List<Stat> stats() {
+            return mStats;
+        }
+
+        /**
+         * @return 指定操作和根目录的统计，没有发生过时返回 null
+         */
+        @Nullable
+        public Stat get(@NonNull Operation operation, @NonNull Root root) {
+            for (Stat stat : mStats) {
+                if (stat.mOperation == operation && stat.mRoot == root) return stat;
+            }
+            return null;
+        }
+
+        /**
+         * @return 指定操作在所有根目录下的次数之和
+         */
+        public long count(@NonNull Operation operation) {
+            long count = 0;
+            for (Stat stat : mStats) {
+                if (stat.mOperation == operation) count += stat.mCount;
+            }
+            return count;
+        }
+
+        /**
+         * @return 指定操作在所有根目录下的字节数之和
+         */
+        public long bytes(@NonNull Operation operation) {
+            long bytes = 0;
+            for (Stat stat : mStats) {
+                if (stat.mOperation == operation) bytes += stat.mBytes;
+            }
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return mStats.toString();
+        }
+    }
+
+    /**
+     * 统计读取的字节数，用于长度未知、需要解码的读取
+     */
+    static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    /**
+     * 统计写入的字节数，用于需要编码的写入
+     */
+    static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
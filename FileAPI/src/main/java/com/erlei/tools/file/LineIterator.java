@@ -0,0 +1,81 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Created by lll on 2019/8/14
+ * Email : erleizh@gmail.com
+ * Describe : 逐行读取文件的迭代器，同一时刻只在内存中保留一行。
+ * 读到文件末尾或发生错误时自动关闭，提前结束遍历时需要调用 {@link #close()}
+ *
+ * @see FileHandle#lines()
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class LineIterator implements Iterator<String>, Iterable<String>, Closeable {
+
+    private final FileHandle mFile;
+    private final BufferedReader mReader;
+    private String mNext;
+    private boolean mFinished;
+
+    LineIterator(@NonNull FileHandle file, @NonNull BufferedReader reader) {
+        mFile = file;
+        mReader = reader;
+    }
+
+    /**
+     * @throws FileOperateException 如果读取失败
+     */
+    @Override
+    public boolean hasNext() {
+        if (mNext != null) return true;
+        if (mFinished) return false;
+        try {
+            mNext = mReader.readLine();
+        } catch (IOException ex) {
+            close();
+            throw new FileOperateException("Error reading file: " + mFile, ex);
+        }
+        if (mNext == null) close();
+        return mNext != null;
+    }
+
+    /**
+     * @return 下一行，不包含行尾的换行符
+     * @throws FileOperateException 如果读取失败
+     */
+    @Override
+    public String next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        String line = mNext;
+        mNext = null;
+        return line;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Cannot remove a line from file: " + mFile);
+    }
+
+    /**
+     * 只能遍历一次
+     */
+    @NonNull
+    @Override
+    public Iterator<String> iterator() {
+        return this;
+    }
+
+    @Override
+    public void close() {
+        mFinished = true;
+        mNext = null;
+        StreamUtils.closeQuietly(mReader);
+    }
+}
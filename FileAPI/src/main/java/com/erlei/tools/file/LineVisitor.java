@@ -0,0 +1,20 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Created by lll on 2019/8/14
+ * Email : erleizh@gmail.com
+ * Describe : 逐行读取文件的回调
+ *
+ * @see FileHandle#forEachLine(LineVisitor)
+ */
+public interface LineVisitor {
+
+    /**
+     * @param line   当前行，不包含行尾的换行符
+     * @param number 行号，从 0 开始
+     * @return false 停止读取
+     */
+    boolean visit(@NonNull String line, long number);
+}
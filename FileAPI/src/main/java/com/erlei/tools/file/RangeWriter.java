@@ -0,0 +1,346 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Created by lll on 2019/9/6
+ * Email : erleizh@gmail.com
+ * Describe : 分块并行写入大文件，例如多线程下载或合并分卷。
+ * 数据先写入预先分配好长度的 [name].part 文件，多个线程可以同时写入不同的区间；已完成的区间定期保存到 [name].ranges，
+ * 中断后再次打开同一个文件时从上次保存的进度继续。全部区间完成后 {@link #finish()} 同步到磁盘并原子地重命名为目标文件
+ *
+ * @see FileHandle#rangeWriter(long)
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class RangeWriter implements Closeable {
+
+    static final String PART_SUFFIX = ".part";
+    static final String RANGES_SUFFIX = ".ranges";
+
+    /**
+     * 默认每写入 16MB 保存一次进度
+     */
+    public static final long DEFAULT_CHECKPOINT_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * 通道被其他线程的中断关闭后重新打开的次数
+     */
+    private static final int CHANNEL_RETRIES = 3;
+
+    private final FileHandle mTarget;
+    private final FileHandle mPart;
+    private final FileHandle mRangesFile;
+    private final long mLength;
+    private final long mCheckpointBytes;
+    /**
+     * 所有写入线程共享，任何一个线程在写入时被中断都会关闭通道，其他线程此时会重新打开
+     */
+    private volatile RandomAccessFile mFile;
+    private volatile FileChannel mChannel;
+    /**
+     * 已完成的区间，start -> end，相邻或重叠的区间会被合并
+     */
+    private final TreeMap<Long, Long> mRanges = new TreeMap<>();
+    private final Object mCheckpointLock = new Object();
+    private long mCompleted;
+    private long mUncheckpointed;
+    private volatile boolean mClosed;
+
+    RangeWriter(@NonNull FileHandle target, long length, long checkpointBytes) {
+        if (length < 0) throw new IllegalArgumentException("length must not be negative: " + length);
+        mTarget = target;
+        mLength = length;
+        mCheckpointBytes = checkpointBytes;
+        mPart = target.sibling(target.name() + PART_SUFFIX);
+        mRangesFile = target.sibling(target.name() + RANGES_SUFFIX);
+        target.parent().mkdirs();
+        boolean resumed = mPart.exists() && readRanges();
+        if (!resumed) {
+            mRanges.clear();
+            mCompleted = 0;
+            mRangesFile.delete();
+        }
+        try {
+            mFile = new RandomAccessFile(mPart.file(), "rw");
+            mChannel = mFile.getChannel();
+            if (mFile.length() != length) mFile.setLength(length);
+        } catch (IOException ex) {
+            throw new FileOperateException("Error writing file: " + mPart, ex);
+        }
+    }
+
+    /**
+     * 写入 [position, position + length) 区间，可以被多个线程同时调用，区间之间可以重叠
+     *
+     * @throws FileOperateException 如果区间超出文件长度或者写入失败
+     */
+    public void write(long position, @NonNull byte[] bytes, int offset, int length) {
+        write(position, ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * 写入 buffer 中剩余的全部字节，see {@link #write(long, byte[], int, int)}
+     */
+    public void write(long position, @NonNull ByteBuffer buffer) {
+        checkNotClosed();
+        long end = position + buffer.remaining();
+        if (position < 0 || end > mLength)
+            throw new FileOperateException("Range [" + position + ", " + end + ") out of file length " + mLength + ": " + mTarget);
+        long offset = position;
+        for (int attempt = 0; ; attempt++) {
+            FileChannel channel = mChannel;
+            try {
+                while (buffer.hasRemaining()) {
+                    offset += channel.write(buffer, offset);
+                }
+                break;
+            } catch (ClosedByInterruptException ex) {
+                throw new FileOperateException("Interrupted while writing file: " + mPart, ex);
+            } catch (ClosedChannelException ex) {
+                if (attempt >= CHANNEL_RETRIES) throw new FileOperateException("Error writing file: " + mPart, ex);
+                reopen(channel);
+            } catch (IOException ex) {
+                throw new FileOperateException("Error writing file: " + mPart, ex);
+            }
+        }
+        boolean checkpoint;
+        synchronized (mRanges) {
+            mCompleted += add(position, end);
+            mUncheckpointed += end - position;
+            checkpoint = mCheckpointBytes > 0 && mUncheckpointed >= mCheckpointBytes;
+            if (checkpoint) mUncheckpointed = 0;
+        }
+        if (checkpoint) checkpoint();
+    }
+
+    /**
+     * 将已写入的数据同步到磁盘，然后保存已完成的区间，只有保存之前已同步的区间才会被记录为完成
+     */
+    public void checkpoint() {
+        checkpoint(true);
+    }
+
+    /**
+     * @param requireSync 为 false 时同步失败也保存区间，然后再抛出异常，用于 close 时尽量保留进度
+     */
+    private void checkpoint(boolean requireSync) {
+        synchronized (mCheckpointLock) {
+            if (mClosed) return;
+            TreeMap<Long, Long> ranges;
+            synchronized (mRanges) {
+                ranges = new TreeMap<>(mRanges);
+            }
+            FileOperateException error = null;
+            try {
+                force(false);
+            } catch (FileOperateException ex) {
+                if (requireSync) throw ex;
+                error = ex;
+            }
+            StringBuilder builder = new StringBuilder(32 + ranges.size() * 32);
+            builder.append(mLength).append(FileAPI.LINE_SEPARATOR);
+            for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+                builder.append(range.getKey()).append(' ').append(range.getValue()).append(FileAPI.LINE_SEPARATOR);
+            }
+            mRangesFile.writeStringAtomic(builder.toString(), "UTF-8", false);
+            if (error != null) throw error;
+        }
+    }
+
+    /**
+     * @return 是否所有区间都已写入
+     */
+    public boolean isComplete() {
+        synchronized (mRanges) {
+            return mCompleted == mLength;
+        }
+    }
+
+    /**
+     * @return 已写入的字节数，重叠的部分只计算一次
+     */
+    public long completedBytes() {
+        synchronized (mRanges) {
+            return mCompleted;
+        }
+    }
+
+    public long length() {
+        return mLength;
+    }
+
+    /**
+     * @return 还没有写入的区间，每个元素是 {start, end}，恢复写入时只需要写入这些区间
+     */
+    @NonNull
+    public List<long[]> missingRanges() {
+        List<long[]> missing = new ArrayList<>();
+        synchronized (mRanges) {
+            long position = 0;
+            for (Map.Entry<Long, Long> range : mRanges.entrySet()) {
+                if (range.getKey() > position) missing.add(new long[]{position, range.getKey()});
+                position = range.getValue();
+            }
+            if (position < mLength) missing.add(new long[]{position, mLength});
+        }
+        return missing;
+    }
+
+    /**
+     * 同步到磁盘并原子地重命名为目标文件，删除进度文件
+     *
+     * @return 目标文件
+     * @throws FileOperateException 如果还有区间没有写入，或者无法重命名
+     */
+    @NonNull
+    public FileHandle finish() {
+        if (!isComplete())
+            throw new FileOperateException("Cannot finish incomplete file, " + completedBytes() + " of " + mLength + " bytes written: " + mTarget);
+        synchronized (mCheckpointLock) {
+            checkNotClosed();
+            mClosed = true;
+            try {
+                force(true);
+            } finally {
+                StreamUtils.closeQuietly(mFile);
+            }
+            mTarget.invalidate();
+            if (!mPart.file().renameTo(mTarget.file()))
+                throw new FileOperateException("Unable to rename " + mPart + " to " + mTarget);
+            mRangesFile.delete();
+        }
+        return mTarget;
+    }
+
+    /**
+     * 保存进度并关闭，之后可以通过 {@link FileHandle#rangeWriter(long)} 继续写入
+     */
+    @Override
+    public void close() {
+        if (mClosed) return;
+        try {
+            checkpoint(false);
+        } finally {
+            synchronized (mCheckpointLock) {
+                mClosed = true;
+                StreamUtils.closeQuietly(mFile);
+            }
+        }
+    }
+
+    /**
+     * 关闭并删除已写入的数据和进度
+     */
+    public void abort() {
+        synchronized (mCheckpointLock) {
+            mClosed = true;
+            StreamUtils.closeQuietly(mFile);
+        }
+        mPart.delete();
+        mRangesFile.delete();
+    }
+
+    /**
+     * 同步到磁盘，通道被其他线程的中断关闭时重新打开，fsync 作用于整个文件，新的通道同样有效
+     */
+    private void force(boolean metaData) {
+        for (int attempt = 0; ; attempt++) {
+            FileChannel channel = mChannel;
+            try {
+                channel.force(metaData);
+                return;
+            } catch (ClosedByInterruptException ex) {
+                throw new FileOperateException("Interrupted while syncing file: " + mPart, ex);
+            } catch (ClosedChannelException ex) {
+                if (attempt >= CHANNEL_RETRIES) throw new FileOperateException("Error writing file: " + mPart, ex);
+                reopen(channel);
+            } catch (IOException ex) {
+                throw new FileOperateException("Error writing file: " + mPart, ex);
+            }
+        }
+    }
+
+    /**
+     * 如果 broken 仍然是当前通道，则重新打开 [name].part，其他线程已经重新打开时直接返回
+     */
+    private void reopen(FileChannel broken) {
+        synchronized (mCheckpointLock) {
+            checkNotClosed();
+            if (mChannel != broken) return;
+            StreamUtils.closeQuietly(mFile);
+            try {
+                RandomAccessFile file = new RandomAccessFile(mPart.file(), "rw");
+                mFile = file;
+                mChannel = file.getChannel();
+            } catch (IOException ex) {
+                throw new FileOperateException("Error writing file: " + mPart, ex);
+            }
+        }
+    }
+
+    /**
+     * 添加一个已完成的区间并与相邻的区间合并
+     *
+     * @return 新增的字节数
+     */
+    private long add(long start, long end) {
+        if (start >= end) return 0;
+        long added = end - start;
+        Map.Entry<Long, Long> floor = mRanges.floorEntry(start);
+        if (floor != null && floor.getValue() >= start) {
+            if (floor.getValue() >= end) return 0;
+            added -= floor.getValue() - start;
+            start = floor.getKey();
+            mRanges.remove(start);
+        }
+        Map.Entry<Long, Long> next = mRanges.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            long overlap = Math.min(end, next.getValue()) - next.getKey();
+            added -= overlap;
+            end = Math.max(end, next.getValue());
+            mRanges.remove(next.getKey());
+            next = mRanges.ceilingEntry(start);
+        }
+        mRanges.put(start, end);
+        return added;
+    }
+
+    /**
+     * @return 进度文件是否有效并且与文件长度一致
+     */
+    private boolean readRanges() {
+        if (!mRangesFile.exists()) return false;
+        try {
+            String[] lines = mRangesFile.readString("UTF-8").split(FileAPI.LINE_SEPARATOR);
+            if (lines.length == 0 || Long.parseLong(lines[0].trim()) != mLength) return false;
+            for (int i = 1; i < lines.length; i++) {
+                String line = lines[i].trim();
+                if (line.isEmpty()) continue;
+                int space = line.indexOf(' ');
+                long start = Long.parseLong(line.substring(0, space));
+                long end = Long.parseLong(line.substring(space + 1));
+                if (start < 0 || end > mLength) return false;
+                mCompleted += add(start, end);
+            }
+            return true;
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    private void checkNotClosed() {
+        if (mClosed) throw new FileOperateException("RangeWriter already closed: " + mTarget);
+    }
+}
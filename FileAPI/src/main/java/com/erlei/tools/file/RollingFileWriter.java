@@ -0,0 +1,292 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.erlei.tools.file.FileAPI.LINE_SEPARATOR;
+
+/**
+ * Created by lll on 2019/9/12
+ * Email : erleizh@gmail.com
+ * Describe : 按大小滚动的日志写入器。
+ * 写入线程只把字符串放入无锁队列，由一个后台线程批量写入一直打开的文件；文件超过 {@link RollingOptions#maxFileSize()} 时
+ * 重命名为 [name].1，原来的 [name].1 依次后移，超出 {@link RollingOptions#maxFiles()} 的文件被删除，可以选择在 IO 线程池中压缩为 gzip。
+ * 未写入的字符数超过 {@link RollingOptions#maxPendingBytes()} 时写入线程阻塞，内存占用有上限。
+ *
+ * @see FileHandle#rollingWriter(RollingOptions)
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class RollingFileWriter implements Closeable, Flushable {
+
+    static final String COMPRESSED_SUFFIX = ".gz";
+
+    private final FileHandle mFile;
+    private final RollingOptions mOptions;
+    private final ConcurrentLinkedQueue<String> mQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong mPending = new AtomicLong();
+    private final AtomicLong mEnqueued = new AtomicLong();
+    private final Object mLock = new Object();
+    private final Thread mFlusher;
+    private final AtomicReference<Exception> mError = new AtomicReference<>();
+    private volatile long mWritten;
+    private volatile boolean mClosed;
+    private OutputStream mOutput;
+    private long mSize;
+    private Future<?> mCompressing;
+
+    RollingFileWriter(@NonNull FileHandle file, @NonNull RollingOptions options) {
+        mFile = file;
+        mOptions = options;
+        if (options.charset() != null) {
+            try {
+                "".getBytes(options.charset());
+            } catch (UnsupportedEncodingException ex) {
+                throw new FileOperateException("Unsupported charset: " + options.charset(), ex);
+            }
+        }
+        mSize = file.stat().length();
+        mOutput = file.write(true);
+        mFlusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "FileAPI-RollingWriter");
+        mFlusher.setDaemon(true);
+        mFlusher.start();
+    }
+
+    /**
+     * @return 当前写入的文件
+     */
+    @NonNull
+    public FileHandle file() {
+        return mFile;
+    }
+
+    /**
+     * 将字符串放入队列，由后台线程写入文件。未写入的字符数超过上限时阻塞
+     *
+     * @throws FileOperateException 如果写入器已关闭
+     */
+    public void write(@NonNull String string) {
+        if (mClosed) throw new FileOperateException("RollingFileWriter already closed: " + mFile);
+        if (string.isEmpty()) return;
+        mQueue.offer(string);
+        mEnqueued.incrementAndGet();
+        long pending = mPending.addAndGet(string.length());
+        if (pending > mOptions.maxPendingBytes()) awaitCapacity();
+    }
+
+    /**
+     * 写入字符串和换行符
+     */
+    public void writeLine(@NonNull String string) {
+        write(string + LINE_SEPARATOR);
+    }
+
+    /**
+     * 阻塞直到之前写入的所有内容都已写入文件
+     *
+     * @throws FileOperateException 如果上次报告之后后台线程写入，滚动或压缩失败，每个错误只抛出一次
+     */
+    @Override
+    public void flush() {
+        long target = mEnqueued.get();
+        LockSupport.unpark(mFlusher);
+        synchronized (mLock) {
+            while (mWritten < target && mFlusher.isAlive()) {
+                try {
+                    mLock.wait(100);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        Exception error = mError.getAndSet(null);
+        if (error != null) throw new FileOperateException("Error writing file: " + mFile, error);
+    }
+
+    /**
+     * 写入所有剩余的内容并关闭文件，等待正在进行的压缩完成，后台线程退出
+     */
+    @Override
+    public void close() {
+        if (mClosed) return;
+        mClosed = true;
+        LockSupport.unpark(mFlusher);
+        try {
+            mFlusher.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return 后台线程最近一次写入，滚动或压缩失败且还没有被 {@link #flush()} 抛出的异常，写入失败时那一批内容会被丢弃
+     */
+    @Nullable
+    public Exception error() {
+        return mError.get();
+    }
+
+    /**
+     * @return 已放入队列但还没有写入文件的字符数
+     */
+    public long pendingBytes() {
+        return mPending.get();
+    }
+
+    /**
+     * @param index 1 表示最近一次滚动的文件
+     * @return 历史文件，启用压缩时为 [name].index.gz
+     */
+    @NonNull
+    public FileHandle rotatedFile(int index) {
+        return mFile.sibling(mFile.name() + "." + index + (mOptions.compress() ? COMPRESSED_SUFFIX : ""));
+    }
+
+    private void awaitCapacity() {
+        LockSupport.unpark(mFlusher);
+        synchronized (mLock) {
+            while (mPending.get() > mOptions.maxPendingBytes() && !mClosed && mFlusher.isAlive()) {
+                try {
+                    mLock.wait(100);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void loop() {
+        long interval = TimeUnit.MILLISECONDS.toNanos(mOptions.flushInterval());
+        StringBuilder batch = new StringBuilder(8192);
+        try {
+            while (true) {
+                boolean closed = mClosed;
+                int count = 0;
+                String string;
+                while (batch.length() < mOptions.maxPendingBytes() && (string = mQueue.poll()) != null) {
+                    batch.append(string);
+                    count++;
+                }
+                if (count > 0) {
+                    writeBatch(batch);
+                    mPending.addAndGet(-batch.length());
+                    batch.setLength(0);
+                    synchronized (mLock) {
+                        mWritten += count;
+                        mLock.notifyAll();
+                    }
+                } else if (closed) {
+                    break;
+                } else {
+                    LockSupport.parkNanos(this, interval);
+                }
+            }
+        } finally {
+            StreamUtils.closeQuietly(mOutput);
+            awaitCompression();
+            synchronized (mLock) {
+                mLock.notifyAll();
+            }
+        }
+    }
+
+    private void writeBatch(StringBuilder batch) {
+        try {
+            String string = batch.toString();
+            byte[] bytes = mOptions.charset() == null ? string.getBytes() : string.getBytes(mOptions.charset());
+            if (mOutput == null) mOutput = mFile.write(true);
+            mOutput.write(bytes);
+            mOutput.flush();
+            mSize += bytes.length;
+            if (mSize >= mOptions.maxFileSize()) rotate();
+        } catch (Exception ex) {
+            mError.set(ex);
+            StreamUtils.closeQuietly(mOutput);
+            mOutput = null;
+            mSize = mFile.stat().length();
+        }
+    }
+
+    /**
+     * 关闭当前文件并依次后移历史文件，然后重新打开一个空文件
+     */
+    private void rotate() throws IOException {
+        mOutput.close();
+        mOutput = null;
+        //历史文件后移之前等待上一次压缩完成，避免移动正在写入的文件
+        awaitCompression();
+        int maxFiles = mOptions.maxFiles();
+        if (maxFiles == 0) {
+            mFile.delete();
+        } else {
+            rotatedFile(maxFiles).delete();
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                FileHandle from = rotatedFile(i);
+                if (from.exists()) from.moveTo(rotatedFile(i + 1));
+            }
+            final FileHandle rotated = mFile.sibling(mFile.name() + ".1");
+            mFile.moveTo(rotated);
+            if (mOptions.compress()) {
+                final FileHandle dest = rotatedFile(1);
+                mCompressing = FileAPI.ioExecutor().submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            compress(rotated, dest);
+                        } catch (Exception ex) {
+                            mError.set(ex);
+                        }
+                    }
+                });
+            }
+        }
+        mSize = 0;
+        mOutput = mFile.write(false);
+    }
+
+    private void awaitCompression() {
+        Future<?> compressing = mCompressing;
+        if (compressing == null) return;
+        mCompressing = null;
+        try {
+            compressing.get();
+        } catch (ExecutionException ex) {
+            mError.set(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void compress(FileHandle source, FileHandle dest) throws IOException {
+        InputStream input = source.read();
+        OutputStream output = dest.writeCompressed();
+        try {
+            StreamUtils.copyStream(input, output);
+            output.close();
+        } finally {
+            StreamUtils.closeQuietly(input);
+            StreamUtils.closeQuietly(output);
+        }
+        source.delete();
+    }
+}
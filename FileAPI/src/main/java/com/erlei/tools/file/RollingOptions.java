@@ -0,0 +1,111 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Created by lll on 2019/9/12
+ * Email : erleizh@gmail.com
+ * Describe : 滚动日志写入器的参数
+ *
+ * @see FileHandle#rollingWriter(RollingOptions)
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class RollingOptions {
+
+    private long mMaxFileSize = 4 * 1024 * 1024;
+    private int mMaxFiles = 5;
+    private boolean mCompress;
+    private long mMaxPendingBytes = 1024 * 1024;
+    private long mFlushInterval = AppendWriter.DEFAULT_FLUSH_INTERVAL;
+    private String mCharset;
+
+    /**
+     * @param maxFileSize 当前文件超过此大小时滚动，默认为 4MB
+     * @return RollingOptions
+     */
+    @NonNull
+    public RollingOptions maxFileSize(long maxFileSize) {
+        if (maxFileSize <= 0) throw new IllegalArgumentException("maxFileSize must be positive: " + maxFileSize);
+        mMaxFileSize = maxFileSize;
+        return this;
+    }
+
+    /**
+     * @param maxFiles 保留的历史文件数量（[name].1 到 [name].maxFiles），更早的文件被删除，默认为 5
+     * @return RollingOptions
+     */
+    @NonNull
+    public RollingOptions maxFiles(int maxFiles) {
+        if (maxFiles < 0) throw new IllegalArgumentException("maxFiles must not be negative: " + maxFiles);
+        mMaxFiles = maxFiles;
+        return this;
+    }
+
+    /**
+     * @param compress 是否将历史文件压缩为 gzip（[name].1.gz），默认为 false
+     * @return RollingOptions
+     */
+    @NonNull
+    public RollingOptions compress(boolean compress) {
+        mCompress = compress;
+        return this;
+    }
+
+    /**
+     * @param maxPendingBytes 还没有写入文件的字符数超过此值时，写入线程阻塞直到后台线程写入文件，默认为 1MB
+     * @return RollingOptions
+     */
+    @NonNull
+    public RollingOptions maxPendingBytes(long maxPendingBytes) {
+        if (maxPendingBytes <= 0) throw new IllegalArgumentException("maxPendingBytes must be positive: " + maxPendingBytes);
+        mMaxPendingBytes = maxPendingBytes;
+        return this;
+    }
+
+    /**
+     * @param flushInterval 后台线程空闲时的最长等待时间（毫秒），默认为 {@value AppendWriter#DEFAULT_FLUSH_INTERVAL}
+     * @return RollingOptions
+     */
+    @NonNull
+    public RollingOptions flushInterval(long flushInterval) {
+        if (flushInterval <= 0) throw new IllegalArgumentException("flushInterval must be positive: " + flushInterval);
+        mFlushInterval = flushInterval;
+        return this;
+    }
+
+    /**
+     * @param charset 可以为null以使用默认字符集。
+     * @return RollingOptions
+     */
+    @NonNull
+    public RollingOptions charset(@Nullable String charset) {
+        mCharset = charset;
+        return this;
+    }
+
+    public long maxFileSize() {
+        return mMaxFileSize;
+    }
+
+    public int maxFiles() {
+        return mMaxFiles;
+    }
+
+    public boolean compress() {
+        return mCompress;
+    }
+
+    public long maxPendingBytes() {
+        return mMaxPendingBytes;
+    }
+
+    public long flushInterval() {
+        return mFlushInterval;
+    }
+
+    @Nullable
+    public String charset() {
+        return mCharset;
+    }
+}
@@ -5,8 +5,12 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Provides utility methods to copy streams.
@@ -14,11 +18,122 @@ import java.io.StringWriter;
 final class StreamUtils {
     public static final int DEFAULT_BUFFER_SIZE = 4096;
     /**
-     * Allocates a {@value #DEFAULT_BUFFER_SIZE} byte[] for use as a temporary buffer and calls
+     * The maximum number of bytes handed to a single {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+     * call. Some kernels cap sendfile well below 2GB, so large files are moved in several chunks.
+     */
+    public static final long CHANNEL_TRANSFER_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The number of {@value #DEFAULT_BUFFER_SIZE} byte[] and char[] buffers each thread keeps for reuse.
+     */
+    public static final int DEFAULT_POOL_SIZE = 2;
+
+    private static volatile int sPoolSize = DEFAULT_POOL_SIZE;
+    private static final AtomicLong sPoolHits = new AtomicLong();
+    private static final AtomicLong sPoolMisses = new AtomicLong();
+    /**
+     * Set while the current thread runs a cancellable task, see {@link #beginCancellable()}
+     */
+    private static final ThreadLocal<Boolean> sCancellable = new ThreadLocal<>();
+    private static final ThreadLocal<ArrayDeque<byte[]>> sByteBuffers = new ThreadLocal<ArrayDeque<byte[]>>() {
+        @Override
+        protected ArrayDeque<byte[]> initialValue() {
+            return new ArrayDeque<>(DEFAULT_POOL_SIZE);
+        }
+    };
+    private static final ThreadLocal<ArrayDeque<char[]>> sCharBuffers = new ThreadLocal<ArrayDeque<char[]>>() {
+        @Override
+        protected ArrayDeque<char[]> initialValue() {
+            return new ArrayDeque<>(DEFAULT_POOL_SIZE);
+        }
+    };
+
+    /**
+     * Returns a {@value #DEFAULT_BUFFER_SIZE} byte[] from the calling thread's pool, allocating one if the pool is empty. The
+     * buffer should be handed back with {@link #recycle(byte[])} once it is no longer used.
+     */
+    public static byte[] obtainByteBuffer() {
+        byte[] buffer = sByteBuffers.get().poll();
+        if (buffer != null) {
+            sPoolHits.incrementAndGet();
+            return buffer;
+        }
+        sPoolMisses.incrementAndGet();
+        return new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * Returns a {@value #DEFAULT_BUFFER_SIZE} char[] from the calling thread's pool, allocating one if the pool is empty. The
+     * buffer should be handed back with {@link #recycle(char[])} once it is no longer used.
+     */
+    public static char[] obtainCharBuffer() {
+        char[] buffer = sCharBuffers.get().poll();
+        if (buffer != null) {
+            sPoolHits.incrementAndGet();
+            return buffer;
+        }
+        sPoolMisses.incrementAndGet();
+        return new char[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * Puts a buffer obtained from {@link #obtainByteBuffer()} back into the calling thread's pool. Buffers of another size and
+     * buffers beyond the pool size are left to the garbage collector.
+     */
+    public static void recycle(byte[] buffer) {
+        if (buffer == null || buffer.length != DEFAULT_BUFFER_SIZE) return;
+        ArrayDeque<byte[]> pool = sByteBuffers.get();
+        if (pool.size() < sPoolSize) pool.push(buffer);
+    }
+
+    /**
+     * Puts a buffer obtained from {@link #obtainCharBuffer()} back into the calling thread's pool. Buffers of another size and
+     * buffers beyond the pool size are left to the garbage collector.
+     */
+    public static void recycle(char[] buffer) {
+        if (buffer == null || buffer.length != DEFAULT_BUFFER_SIZE) return;
+        ArrayDeque<char[]> pool = sCharBuffers.get();
+        if (pool.size() < sPoolSize) pool.push(buffer);
+    }
+
+    /**
+     * Sets the number of buffers of each kind a thread keeps. 0 disables pooling. Threads that already hold more buffers shrink
+     * as they stop recycling them.
+     */
+    public static void setPoolSize(int poolSize) {
+        if (poolSize < 0) throw new IllegalArgumentException("poolSize must not be negative: " + poolSize);
+        sPoolSize = poolSize;
+    }
+
+    public static int poolSize() {
+        return sPoolSize;
+    }
+
+    /**
+     * @return the number of buffer requests served from a pool.
+     */
+    public static long poolHits() {
+        return sPoolHits.get();
+    }
+
+    /**
+     * @return the number of buffer requests that had to allocate.
+     */
+    public static long poolMisses() {
+        return sPoolMisses.get();
+    }
+
+    /**
+     * Borrows a {@value #DEFAULT_BUFFER_SIZE} byte[] from the thread's pool for use as a temporary buffer and calls
      * {@link #copyStream(InputStream, OutputStream, byte[])}.
      */
     public static void copyStream(InputStream input, OutputStream output) throws IOException {
-        copyStream(input, output, new byte[DEFAULT_BUFFER_SIZE]);
+        byte[] buffer = obtainByteBuffer();
+        try {
+            copyStream(input, output, buffer);
+        } finally {
+            recycle(buffer);
+        }
     }
 
     /**
@@ -32,12 +147,92 @@ final class StreamUtils {
     /**
      * Copy the data from an {@link InputStream} to an {@link OutputStream}, using the specified byte[] as a temporary buffer. The
      * stream is not closed.
+     *
+     * @throws InterruptedIOException if the current thread is interrupted between two chunks inside {@link #beginCancellable()}, so
+     *                                 that asynchronous copies can be cancelled.
      */
     public static void copyStream(InputStream input, OutputStream output, byte[] buffer) throws IOException {
         int bytesRead;
         while ((bytesRead = input.read(buffer)) != -1) {
             output.write(buffer, 0, bytesRead);
+            checkCancelled();
+        }
+    }
+
+    /**
+     * Copy the remaining data of the input {@link FileChannel} to the current position of the output {@link FileChannel} using
+     * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, so that the bytes are moved by the kernel
+     * without passing through a heap buffer. The channels are not closed.
+     *
+     * @return the number of bytes transferred.
+     */
+    public static long copyChannel(FileChannel input, FileChannel output) throws IOException {
+        long position = input.position();
+        long transferred = copyChannel(input, position, input.size() - position, output);
+        input.position(position + transferred);
+        return transferred;
+    }
+
+    /**
+     * Copy a region of the input {@link FileChannel} to the current position of the output {@link FileChannel}, see
+     * {@link #copyChannel(FileChannel, FileChannel)}. The position of the input channel is not changed and the channels are not
+     * closed.
+     *
+     * @return the number of bytes transferred, which is less than count only if the input ends first.
+     * @throws InterruptedIOException if the current thread is interrupted between two chunks inside {@link #beginCancellable()}.
+     */
+    public static long copyChannel(FileChannel input, long position, long count, FileChannel output) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long n = input.transferTo(position + transferred, Math.min(count - transferred, CHANNEL_TRANSFER_SIZE), output);
+            if (n <= 0) break;
+            transferred += n;
+            checkCancelled();
         }
+        return transferred;
+    }
+
+    /**
+     * Throws an {@link InterruptedIOException} if the current thread has been interrupted. The interrupt status is kept.
+     */
+    static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Copy interrupted");
+    }
+
+    /**
+     * Enables the interrupt check of the copy loops on the current thread, so that cancelling an asynchronous task stops a long copy
+     * between two chunks. Synchronous callers never enter this state and keep completing even if their interrupt flag is set.
+     *
+     * @return whether the current thread was already cancellable, to be passed to {@link #endCancellable(boolean)}
+     */
+    static boolean beginCancellable() {
+        boolean previous = sCancellable.get() != null;
+        sCancellable.set(Boolean.TRUE);
+        return previous;
+    }
+
+    static void endCancellable(boolean previous) {
+        if (!previous) sCancellable.remove();
+    }
+
+    private static void checkCancelled() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted() && sCancellable.get() != null)
+            throw new InterruptedIOException("Copy interrupted");
+    }
+
+    /**
+     * Reads from the {@link InputStream} until the byte[] is full or the end of the stream is reached. The stream is not closed.
+     *
+     * @return the number of bytes read, which is less than the length of the array only at the end of the stream.
+     */
+    public static int readFully(InputStream input, byte[] bytes) throws IOException {
+        int position = 0;
+        while (position < bytes.length) {
+            int count = input.read(bytes, position, bytes.length - position);
+            if (count < 0) break;
+            position += count;
+        }
+        return position;
     }
 
     /**
@@ -82,10 +277,14 @@ final class StreamUtils {
     public static String copyStreamToString(InputStream input, int estimatedSize, String charset) throws IOException {
         InputStreamReader reader = charset == null ? new InputStreamReader(input) : new InputStreamReader(input, charset);
         StringWriter writer = new StringWriter(Math.max(0, estimatedSize));
-        char[] buffer = new char[DEFAULT_BUFFER_SIZE];
-        int charsRead;
-        while ((charsRead = reader.read(buffer)) != -1) {
-            writer.write(buffer, 0, charsRead);
+        char[] buffer = obtainCharBuffer();
+        try {
+            int charsRead;
+            while ((charsRead = reader.read(buffer)) != -1) {
+                writer.write(buffer, 0, charsRead);
+            }
+        } finally {
+            recycle(buffer);
         }
         return writer.toString();
     }
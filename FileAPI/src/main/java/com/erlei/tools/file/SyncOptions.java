@@ -0,0 +1,47 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Created by lll on 2019/8/30
+ * Email : erleizh@gmail.com
+ * Describe : 增量同步的参数
+ *
+ * @see FileHandle#syncTo(FileHandle, SyncOptions)
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class SyncOptions {
+
+    private String mDigestAlgorithm;
+    private boolean mDeleteExtraneous;
+
+    /**
+     * @param algorithm 不为 null 时，大小相同但修改时间不同的文件再比较摘要，摘要相同时只更新修改时间而不复制
+     * @return SyncOptions
+     */
+    @NonNull
+    public SyncOptions compareDigest(@Nullable String algorithm) {
+        mDigestAlgorithm = algorithm;
+        return this;
+    }
+
+    /**
+     * @param deleteExtraneous 是否删除目标目录中源目录没有的文件和目录，默认为 false
+     * @return SyncOptions
+     */
+    @NonNull
+    public SyncOptions deleteExtraneous(boolean deleteExtraneous) {
+        mDeleteExtraneous = deleteExtraneous;
+        return this;
+    }
+
+    @Nullable
+    public String digestAlgorithm() {
+        return mDigestAlgorithm;
+    }
+
+    public boolean deleteExtraneous() {
+        return mDeleteExtraneous;
+    }
+}
@@ -0,0 +1,75 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Created by lll on 2019/8/30
+ * Email : erleizh@gmail.com
+ * Describe : 增量同步的结果
+ *
+ * @see FileHandle#syncTo(FileHandle, SyncOptions)
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class SyncResult {
+
+    int copied;
+    int unchanged;
+    int deleted;
+    long copiedBytes;
+    final List<FileOperateException> errors = new ArrayList<>();
+
+    SyncResult() {
+    }
+
+    /**
+     * @return 新增或变化而被复制的文件数量
+     */
+    public int copiedCount() {
+        return copied;
+    }
+
+    /**
+     * @return 没有变化而跳过的文件数量
+     */
+    public int unchangedCount() {
+        return unchanged;
+    }
+
+    /**
+     * @return 从目标目录中删除的多余文件和目录数量
+     */
+    public int deletedCount() {
+        return deleted;
+    }
+
+    /**
+     * @return 复制的字节数
+     */
+    public long copiedBytes() {
+        return copiedBytes;
+    }
+
+    /**
+     * @return 同步过程中发生的错误，单个文件失败不会中断同步
+     */
+    @NonNull
+    public List<FileOperateException> errors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public boolean isSuccessful() {
+        return errors.isEmpty();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.getDefault(), "SyncResult{copied=%d, unchanged=%d, deleted=%d, copiedBytes=%d, errors=%d}",
+                copied, unchanged, deleted, copiedBytes, errors.size());
+    }
+}
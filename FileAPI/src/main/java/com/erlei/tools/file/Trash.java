@@ -0,0 +1,175 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by lll on 2019/8/23
+ * Email : erleizh@gmail.com
+ * Describe : 回收站，删除大目录时先把它重命名到所在根目录的回收站中，再由后台线程并行删除。
+ * 重命名是原子的并且只需要一次系统调用，调用方不需要等待删除完成
+ *
+ * @see FileHandle#deleteInBackground()
+ */
+final class Trash {
+
+    static final String TRASH_DIR = ".trash";
+
+    private static final int REAPER_THREADS = 2;
+    private static final AtomicInteger sSequence = new AtomicInteger();
+    private static final AtomicBoolean sPending = new AtomicBoolean();
+    private static ExecutorService sCoordinator;
+    private static ExecutorService sReapers;
+
+    private Trash() {
+    }
+
+    /**
+     * 将文件或目录移动到回收站并安排后台删除
+     *
+     * @return false 如果文件不在任何根目录下，或者无法重命名（例如是根目录本身）
+     */
+    static boolean recycle(@NonNull File target) {
+        File trash = trashDir(target);
+        if (trash == null) return false;
+        //noinspection ResultOfMethodCallIgnored
+        trash.mkdirs();
+        File entry = new File(trash, System.currentTimeMillis() + "-" + sSequence.incrementAndGet() + "-" + target.getName());
+        if (!target.renameTo(entry)) return false;
+        reap();
+        return true;
+    }
+
+    /**
+     * 在后台删除所有根目录回收站中的内容，包括上次运行时没有删除完的内容
+     */
+    static void reap() {
+        if (!sPending.compareAndSet(false, true)) return;
+        coordinator().execute(new Runnable() {
+            @Override
+            public void run() {
+                sPending.set(false);
+                for (String root : FileAPI.roots()) {
+                    reap(new File(root, TRASH_DIR));
+                }
+            }
+        });
+    }
+
+    /**
+     * @return 文件所在根目录的回收站，文件不在任何根目录下或者就是根目录，回收站本身时返回 null
+     */
+    @Nullable
+    private static File trashDir(File target) {
+        String path = target.getAbsolutePath();
+        for (String root : FileAPI.roots()) {
+            if (!path.startsWith(root + File.separator)) continue;
+            File trash = new File(root, TRASH_DIR);
+            String trashPath = trash.getAbsolutePath();
+            if (path.equals(trashPath) || path.startsWith(trashPath + File.separator)) return null;
+            return trash;
+        }
+        return null;
+    }
+
+    /**
+     * 把回收站中每一项的直接子项分发到删除线程上，全部完成后再删除剩下的空目录
+     */
+    private static void reap(File trash) {
+        File[] entries = trash.listFiles();
+        if (entries == null || entries.length == 0) return;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (File entry : entries) {
+            File[] children = entry.listFiles();
+            if (children == null) continue;
+            for (final File child : children) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        deleteTree(child);
+                        return null;
+                    }
+                });
+            }
+        }
+        try {
+            reapers().invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (File entry : entries) {
+            deleteTree(entry);
+        }
+    }
+
+    /**
+     * 使用显式栈后序删除目录树，不受目录深度限制。
+     * 每个目录只展开一次，子项删除失败或目录无法列出时不会重复入栈，最多尝试一遍就放弃
+     */
+    static void deleteTree(File root) {
+        Deque<File> stack = new ArrayDeque<>();
+        Set<File> expanded = new HashSet<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            File file = stack.peek();
+            if (expanded.add(file) && file.isDirectory()) {
+                File[] children = file.listFiles();
+                boolean pushed = false;
+                if (children != null) {
+                    for (File child : children) {
+                        if (child.isDirectory()) {
+                            stack.push(child);
+                            pushed = true;
+                        } else {
+                            //noinspection ResultOfMethodCallIgnored
+                            child.delete();
+                        }
+                    }
+                }
+                if (pushed) continue;
+            }
+            stack.pop();
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private static synchronized ExecutorService coordinator() {
+        if (sCoordinator == null) sCoordinator = Executors.newSingleThreadExecutor(threadFactory("FileAPI-Trash"));
+        return sCoordinator;
+    }
+
+    private static synchronized ExecutorService reapers() {
+        if (sReapers == null) sReapers = Executors.newFixedThreadPool(REAPER_THREADS, threadFactory("FileAPI-Reaper"));
+        return sReapers;
+    }
+
+    private static ThreadFactory threadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                Thread thread = new Thread(r, name + "-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        };
+    }
+}
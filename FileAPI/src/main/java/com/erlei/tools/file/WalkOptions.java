@@ -0,0 +1,67 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.FileFilter;
+
+/**
+ * Created by lll on 2019/8/21
+ * Email : erleizh@gmail.com
+ * Describe : 遍历目录树的参数
+ *
+ * @see FileHandle#walk(WalkOptions, FileVisitor)
+ * @see FileHandle#walkSize(WalkOptions)
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class WalkOptions {
+
+    private int mMaxDepth = Integer.MAX_VALUE;
+    private int mParallelism = 1;
+    private FileFilter mFilter;
+
+    /**
+     * @param maxDepth 最大深度，目录的直接子项为 1，默认不限制
+     * @return WalkOptions
+     */
+    @NonNull
+    public WalkOptions maxDepth(int maxDepth) {
+        if (maxDepth < 0) throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+        mMaxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * @param parallelism 大于 1 时使用 ForkJoinPool 并行遍历，默认为 1
+     * @return WalkOptions
+     */
+    @NonNull
+    public WalkOptions parallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        mParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param filter 被过滤掉的文件不会被访问，被过滤掉的目录连同子项都会被跳过
+     * @return WalkOptions
+     */
+    @NonNull
+    public WalkOptions filter(@Nullable FileFilter filter) {
+        mFilter = filter;
+        return this;
+    }
+
+    public int maxDepth() {
+        return mMaxDepth;
+    }
+
+    public int parallelism() {
+        return mParallelism;
+    }
+
+    @Nullable
+    public FileFilter filter() {
+        return mFilter;
+    }
+}
@@ -0,0 +1,500 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Created by lll on 2019/9/10
+ * Email : erleizh@gmail.com
+ * Describe : zip 压缩和解压。
+ * 压缩时各个条目在线程池中独立地 deflate 到内存（超过 {@link #SPILL_THRESHOLD} 时转存到临时文件），再由调用线程按顺序写入归档，
+ * 同时在途的条目数量有上限，内存占用与条目数量无关；压缩后没有变小的条目直接存储。不支持 ZIP64，
+ * 条目数量超过 65535 或大小超过 4GB 时抛出异常。
+ * 解压时所有条目共享一个 {@link ZipFile}，在线程池中并行解压
+ */
+final class ZipArchive {
+
+    static final int SPILL_THRESHOLD = 256 * 1024;
+    private static final int MAX_ENTRIES = 0xffff;
+    private static final long MAX_SIZE = 0xffffffffL;
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int VERSION = 20;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int DIRECTORY_ATTRIBUTE = 0x10;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ZipArchive() {
+    }
+
+    @NonNull
+    static FileHandle zip(@NonNull FileHandle source, @NonNull FileHandle archive, @NonNull ZipOptions options) {
+        FileStat stat = source.stat();
+        if (!stat.exists()) throw new FileOperateException("Source does not exist: " + source);
+        List<Entry> entries = collect(source, stat, options);
+        if (entries.size() > MAX_ENTRIES)
+            throw new FileOperateException("Too many entries for a zip archive without ZIP64: " + entries.size());
+        FileHandle parent = archive.parent().mkdirs();
+        File spill = archive.sibling("." + archive.name() + ".spill").file();
+        ExecutorService owned = options.executor() == null ? Executors.newFixedThreadPool(options.parallelism()) : null;
+        Executor executor = owned != null ? owned : options.executor();
+        List<FutureTask<Entry>> tasks = new ArrayList<>(entries.size());
+        File temp = null;
+        CountingOutputStream output = null;
+        try {
+            temp = File.createTempFile("." + archive.name() + "-", ".tmp", parent.file());
+            output = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(temp), Compression.BUFFER_SIZE));
+            int window = options.parallelism() * 4;
+            for (Entry entry : entries) tasks.add(new FutureTask<>(new Compress(entry, options.level(), spill)));
+            int submitted = 0;
+            for (int i = 0; i < tasks.size(); i++) {
+                while (submitted < tasks.size() && submitted < i + window) executor.execute(tasks.get(submitted++));
+                Entry entry = get(tasks.get(i));
+                try {
+                    writeEntry(output, entry);
+                } finally {
+                    if (entry.data != null) entry.data.release();
+                }
+            }
+            long centralOffset = output.count;
+            for (Entry entry : entries) writeCentralHeader(output, entry);
+            writeEnd(output, entries.size(), output.count - centralOffset, centralOffset);
+            output.close();
+            output = null;
+            archive.invalidate();
+            if (!temp.renameTo(archive.file())) throw new IOException("Unable to rename " + temp + " to " + archive);
+            temp = null;
+            return archive;
+        } catch (IOException ex) {
+            throw new FileOperateException("Error writing file: " + archive, ex);
+        } finally {
+            for (FutureTask<Entry> task : tasks) task.cancel(true);
+            if (owned != null) owned.shutdownNow();
+            StreamUtils.closeQuietly(output);
+            //noinspection ResultOfMethodCallIgnored
+            if (temp != null) temp.delete();
+            Trash.deleteTree(spill);
+        }
+    }
+
+    @NonNull
+    static FileHandle unzip(@NonNull FileHandle archive, @NonNull final FileHandle dir, @NonNull ZipOptions options) {
+        ZipFile zip = null;
+        ExecutorService owned = null;
+        List<FutureTask<Void>> tasks = new ArrayList<>();
+        try {
+            zip = new ZipFile(archive.file());
+            String root = dir.mkdirs().file().getCanonicalPath();
+            List<ZipEntry> files = new ArrayList<>();
+            Enumeration<? extends ZipEntry> enumeration = zip.entries();
+            while (enumeration.hasMoreElements()) {
+                ZipEntry entry = enumeration.nextElement();
+                File target = resolve(dir, root, entry.getName());
+                if (entry.isDirectory()) {
+                    //noinspection ResultOfMethodCallIgnored
+                    target.mkdirs();
+                } else {
+                    //noinspection ResultOfMethodCallIgnored
+                    target.getParentFile().mkdirs();
+                    files.add(entry);
+                }
+            }
+            owned = options.executor() == null ? Executors.newFixedThreadPool(options.parallelism()) : null;
+            Executor executor = owned != null ? owned : options.executor();
+            final ZipFile shared = zip;
+            for (final ZipEntry entry : files) {
+                FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        boolean cancellable = StreamUtils.beginCancellable();
+                        try {
+                            extract(shared.getInputStream(entry), entry, dir.child(entry.getName()));
+                        } finally {
+                            StreamUtils.endCancellable(cancellable);
+                        }
+                        return null;
+                    }
+                });
+                tasks.add(task);
+                executor.execute(task);
+            }
+            for (FutureTask<Void> task : tasks) get(task);
+            return dir;
+        } catch (IOException ex) {
+            throw new FileOperateException("Error reading file: " + archive, ex);
+        } finally {
+            for (FutureTask<Void> task : tasks) task.cancel(true);
+            if (owned != null) owned.shutdownNow();
+            StreamUtils.closeQuietly(zip);
+        }
+    }
+
+    /**
+     * 顺序解压一个 zip 流，用于无法随机访问的归档（例如压缩的资产）
+     */
+    @NonNull
+    static FileHandle unzip(@NonNull InputStream input, @NonNull FileHandle dir) {
+        ZipInputStream zip = new ZipInputStream(input);
+        try {
+            String root = dir.mkdirs().file().getCanonicalPath();
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                File target = resolve(dir, root, entry.getName());
+                if (entry.isDirectory()) {
+                    //noinspection ResultOfMethodCallIgnored
+                    target.mkdirs();
+                } else {
+                    extract(zip, entry, dir.child(entry.getName()));
+                }
+            }
+            return dir;
+        } catch (IOException ex) {
+            throw new FileOperateException("Error reading zip stream to: " + dir, ex);
+        } finally {
+            StreamUtils.closeQuietly(zip);
+        }
+    }
+
+    /**
+     * 拒绝解压到目标目录之外的条目（zip slip）
+     */
+    private static File resolve(FileHandle dir, String root, String name) throws IOException {
+        File target = new File(dir.file(), name);
+        String canonical = target.getCanonicalPath();
+        if (!canonical.equals(root) && !canonical.startsWith(root + File.separator))
+            throw new FileOperateException("Zip entry is outside of the target dir: " + name);
+        return target;
+    }
+
+    /**
+     * 解压单个条目，zip 流不会被关闭
+     */
+    private static void extract(InputStream input, ZipEntry entry, FileHandle target) throws IOException {
+        OutputStream output = target.write(false);
+        try {
+            StreamUtils.copyStream(input, output);
+        } finally {
+            StreamUtils.closeQuietly(output);
+            if (!(input instanceof ZipInputStream)) StreamUtils.closeQuietly(input);
+        }
+        if (entry.getTime() != -1) {
+            //noinspection ResultOfMethodCallIgnored
+            target.file().setLastModified(entry.getTime());
+        }
+    }
+
+    private static List<Entry> collect(FileHandle source, FileStat stat, ZipOptions options) {
+        final List<Entry> entries = new ArrayList<>();
+        if (!stat.isDirectory()) {
+            entries.add(new Entry(source.name(), source, stat));
+            return entries;
+        }
+        final int prefix = source.path().length() + 1;
+        source.walk(new WalkOptions().filter(options.filter()), new FileVisitor() {
+            @Override
+            public boolean visit(@NonNull FileHandle file, @NonNull FileStat stat, int depth) {
+                String name = file.path().substring(prefix).replace(File.separatorChar, '/');
+                entries.add(new Entry(stat.isDirectory() ? name + "/" : name, file, stat));
+                return true;
+            }
+        });
+        return entries;
+    }
+
+    private static <T> T get(FutureTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new FileOperateException("Interrupted while waiting for zip entries", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new FileOperateException("Error processing zip entry", (Exception) cause);
+        }
+    }
+
+    private static void writeEntry(OutputStream output, Entry entry) throws IOException {
+        if (entry.size > MAX_SIZE || entry.compressedSize > MAX_SIZE)
+            throw new FileOperateException("Entry too large for a zip archive without ZIP64: " + entry.file);
+        entry.offset = ((CountingOutputStream) output).count;
+        if (entry.offset > MAX_SIZE)
+            throw new FileOperateException("Archive too large for a zip archive without ZIP64: " + entry.file);
+        byte[] header = new byte[30];
+        writeInt(header, 0, LOCAL_HEADER);
+        writeShort(header, 4, VERSION);
+        writeShort(header, 6, FLAG_UTF8);
+        writeShort(header, 8, entry.method);
+        writeInt(header, 10, (int) entry.dosTime);
+        writeInt(header, 14, (int) entry.crc);
+        writeInt(header, 18, (int) entry.compressedSize);
+        writeInt(header, 22, (int) entry.size);
+        writeShort(header, 26, entry.name.length);
+        writeShort(header, 28, 0);
+        output.write(header);
+        output.write(entry.name);
+        if (entry.data != null) {
+            entry.data.writeTo(output);
+        } else if (entry.method == ZipEntry.STORED && entry.size > 0) {
+            InputStream input = entry.file.read();
+            try {
+                long copied = copy(input, output, entry.size);
+                if (copied != entry.size) throw new IOException("File changed while zipping: " + entry.file);
+            } finally {
+                StreamUtils.closeQuietly(input);
+            }
+        }
+    }
+
+    private static long copy(InputStream input, OutputStream output, long count) throws IOException {
+        byte[] buffer = StreamUtils.obtainByteBuffer();
+        try {
+            long copied = 0;
+            while (copied < count) {
+                int n = input.read(buffer, 0, (int) Math.min(buffer.length, count - copied));
+                if (n < 0) break;
+                output.write(buffer, 0, n);
+                copied += n;
+            }
+            return copied;
+        } finally {
+            StreamUtils.recycle(buffer);
+        }
+    }
+
+    private static void writeCentralHeader(OutputStream output, Entry entry) throws IOException {
+        byte[] header = new byte[46];
+        writeInt(header, 0, CENTRAL_HEADER);
+        writeShort(header, 4, VERSION);
+        writeShort(header, 6, VERSION);
+        writeShort(header, 8, FLAG_UTF8);
+        writeShort(header, 10, entry.method);
+        writeInt(header, 12, (int) entry.dosTime);
+        writeInt(header, 16, (int) entry.crc);
+        writeInt(header, 20, (int) entry.compressedSize);
+        writeInt(header, 24, (int) entry.size);
+        writeShort(header, 28, entry.name.length);
+        writeInt(header, 38, entry.directory ? DIRECTORY_ATTRIBUTE : 0);
+        writeInt(header, 42, (int) entry.offset);
+        output.write(header);
+        output.write(entry.name);
+    }
+
+    private static void writeEnd(OutputStream output, int count, long centralSize, long centralOffset) throws IOException {
+        if (centralOffset > MAX_SIZE) throw new FileOperateException("Archive too large for a zip archive without ZIP64");
+        byte[] end = new byte[22];
+        writeInt(end, 0, END_OF_CENTRAL_DIRECTORY);
+        writeShort(end, 8, count);
+        writeShort(end, 10, count);
+        writeInt(end, 12, (int) centralSize);
+        writeInt(end, 16, (int) centralOffset);
+        output.write(end);
+    }
+
+    private static void writeShort(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+
+    /**
+     * MS-DOS 格式的时间，1980 年之前的时间记为 1980-01-01
+     */
+    private static long dosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) return (1 << 21) | (1 << 16);
+        return (long) (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11 | calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    private static final class Entry {
+        final byte[] name;
+        final FileHandle file;
+        final boolean directory;
+        final long dosTime;
+        int method = ZipEntry.STORED;
+        long crc;
+        long size;
+        long compressedSize;
+        long offset;
+        SpillBuffer data;
+
+        Entry(String name, FileHandle file, FileStat stat) {
+            this.name = name.getBytes(UTF_8);
+            this.file = file;
+            this.directory = stat.isDirectory();
+            this.dosTime = dosTime(stat.lastModified());
+        }
+    }
+
+    /**
+     * 在线程池中压缩一个条目
+     */
+    private static final class Compress implements Callable<Entry> {
+        private final Entry mEntry;
+        private final int mLevel;
+        private final File mSpill;
+
+        Compress(Entry entry, int level, File spill) {
+            mEntry = entry;
+            mLevel = level;
+            mSpill = spill;
+        }
+
+        @Override
+        public Entry call() throws IOException {
+            if (mEntry.directory) return mEntry;
+            CRC32 crc = new CRC32();
+            Deflater deflater = Compression.obtainDeflater(mLevel);
+            SpillBuffer data = new SpillBuffer(mSpill);
+            InputStream input = mEntry.file.read();
+            byte[] buffer = StreamUtils.obtainByteBuffer();
+            byte[] deflated = StreamUtils.obtainByteBuffer();
+            boolean success = false;
+            try {
+                long size = 0;
+                int n;
+                while ((n = input.read(buffer)) != -1) {
+                    crc.update(buffer, 0, n);
+                    size += n;
+                    deflater.setInput(buffer, 0, n);
+                    while (!deflater.needsInput()) {
+                        data.write(deflated, 0, deflater.deflate(deflated));
+                    }
+                    StreamUtils.checkInterrupted();
+                }
+                deflater.finish();
+                while (!deflater.finished()) {
+                    data.write(deflated, 0, deflater.deflate(deflated));
+                }
+                mEntry.crc = crc.getValue();
+                mEntry.size = size;
+                if (deflater.getBytesWritten() < size) {
+                    mEntry.method = ZipEntry.DEFLATED;
+                    mEntry.compressedSize = deflater.getBytesWritten();
+                    mEntry.data = data;
+                } else {
+                    mEntry.compressedSize = size;
+                    data.release();
+                }
+                success = true;
+                return mEntry;
+            } finally {
+                StreamUtils.recycle(buffer);
+                StreamUtils.recycle(deflated);
+                StreamUtils.closeQuietly(input);
+                Compression.recycle(deflater, mLevel);
+                if (!success) data.release();
+            }
+        }
+    }
+
+    /**
+     * 先写入内存，超过 {@link #SPILL_THRESHOLD} 后转存到临时文件
+     */
+    private static final class SpillBuffer extends OutputStream {
+        private final File mDir;
+        private StreamUtils.OptimizedByteArrayOutputStream mMemory = new StreamUtils.OptimizedByteArrayOutputStream(1024);
+        private File mFile;
+        private OutputStream mFileOutput;
+
+        SpillBuffer(File dir) {
+            mDir = dir;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            if (mMemory != null && mMemory.size() + len > SPILL_THRESHOLD) {
+                //noinspection ResultOfMethodCallIgnored
+                mDir.mkdirs();
+                mFile = File.createTempFile("entry", ".deflate", mDir);
+                mFileOutput = new BufferedOutputStream(new FileOutputStream(mFile), Compression.BUFFER_SIZE);
+                mMemory.writeTo(mFileOutput);
+                mMemory = null;
+            }
+            if (mMemory != null) mMemory.write(b, off, len);
+            else mFileOutput.write(b, off, len);
+        }
+
+        void writeTo(OutputStream output) throws IOException {
+            if (mMemory != null) {
+                mMemory.writeTo(output);
+                return;
+            }
+            mFileOutput.close();
+            InputStream input = new FileInputStream(mFile);
+            try {
+                StreamUtils.copyStream(input, output);
+            } finally {
+                StreamUtils.closeQuietly(input);
+            }
+        }
+
+        void release() {
+            mMemory = null;
+            StreamUtils.closeQuietly(mFileOutput);
+            //noinspection ResultOfMethodCallIgnored
+            if (mFile != null) mFile.delete();
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.erlei.tools.file;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.FileFilter;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by lll on 2019/9/10
+ * Email : erleizh@gmail.com
+ * Describe : 压缩和解压 zip 的参数
+ *
+ * @see FileHandle#zipTo(FileHandle, ZipOptions)
+ * @see FileHandle#unzipTo(FileHandle, ZipOptions)
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class ZipOptions {
+
+    private int mParallelism = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private int mLevel = Compression.level();
+    private FileFilter mFilter;
+    private Executor mExecutor;
+
+    /**
+     * @param parallelism 同时压缩或解压的条目数量，默认为 CPU 核心数（至少为2）
+     * @return ZipOptions
+     */
+    @NonNull
+    public ZipOptions parallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        mParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param level 压缩级别，0-9，-1 表示默认级别，默认为 {@link FileAPI#setCompressionLevel(int)} 设置的级别
+     * @return ZipOptions
+     */
+    @NonNull
+    public ZipOptions level(int level) {
+        mLevel = Compression.checkLevel(level);
+        return this;
+    }
+
+    /**
+     * @param filter 压缩时只包含满足条件的文件和目录，不满足条件的目录不会被遍历
+     * @return ZipOptions
+     */
+    @NonNull
+    public ZipOptions filter(@Nullable FileFilter filter) {
+        mFilter = filter;
+        return this;
+    }
+
+    /**
+     * @param executor 执行压缩和解压任务的线程池，为 null 时每次操作会创建并在完成后关闭一个大小为 {@link #parallelism()} 的线程池
+     * @return ZipOptions
+     */
+    @NonNull
+    public ZipOptions executor(@Nullable Executor executor) {
+        mExecutor = executor;
+        return this;
+    }
+
+    public int parallelism() {
+        return mParallelism;
+    }
+
+    public int level() {
+        return mLevel;
+    }
+
+    @Nullable
+    public FileFilter filter() {
+        return mFilter;
+    }
+
+    @Nullable
+    public Executor executor() {
+        return mExecutor;
+    }
+}
@@ -0,0 +1,69 @@
+package com.erlei.tools.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by lll on 2019/9/16
+ * Email : erleizh@gmail.com
+ * Describe : 逐行追加写入，对比 {@link FileHandle#writeLine(String)}，{@link AppendWriter} 和 {@link RollingFileWriter}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AppendBenchmark {
+
+    private static final int LINES = 1000;
+
+    private FileHandle mDir;
+    private FileHandle mLog;
+
+    @Setup
+    public void setup() throws IOException {
+        mDir = BenchmarkFiles.tempDir("append");
+        mLog = mDir.child("log");
+    }
+
+    @Setup(Level.Iteration)
+    public void resetLog() {
+        mLog.delete();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFiles.delete(mDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void writeLine() {
+        for (int i = 0; i < LINES; i++) mLog.writeLine("benchmark line " + i);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void appendWriter() {
+        AppendWriter writer = mLog.appendWriter();
+        for (int i = 0; i < LINES; i++) writer.writeLine("benchmark line " + i);
+        writer.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void rollingWriter() {
+        RollingFileWriter writer = mLog.rollingWriter();
+        for (int i = 0; i < LINES; i++) writer.writeLine("benchmark line " + i);
+        writer.close();
+    }
+}
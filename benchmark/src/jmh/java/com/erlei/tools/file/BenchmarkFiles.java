@@ -0,0 +1,53 @@
+package com.erlei.tools.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Created by lll on 2019/9/16
+ * Email : erleizh@gmail.com
+ * Describe : 基准测试使用的临时文件，每个基准测试在 /tmp 下使用独立的目录，结束后删除
+ */
+final class BenchmarkFiles {
+
+    private BenchmarkFiles() {
+    }
+
+    static FileHandle tempDir(String prefix) throws IOException {
+        File file = File.createTempFile(prefix, "");
+        if (!file.delete() || !file.mkdirs()) throw new IOException("Cannot create temp dir: " + file);
+        return new FileHandle(file);
+    }
+
+    static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    static String text(int size) {
+        StringBuilder builder = new StringBuilder(size);
+        Random random = new Random(size);
+        while (builder.length() < size) {
+            builder.append((char) ('a' + random.nextInt(26)));
+            if (random.nextInt(40) == 0) builder.append(FileAPI.LINE_SEPARATOR);
+        }
+        builder.setLength(size);
+        return builder.toString();
+    }
+
+    /**
+     * 创建 depth 层目录，每层 width 个子目录和 files 个文件，每个文件 fileSize 字节
+     */
+    static void tree(FileHandle dir, int depth, int width, int files, int fileSize) {
+        byte[] bytes = randomBytes(fileSize);
+        for (int i = 0; i < files; i++) dir.child("file" + i).writeBytes(bytes, false);
+        if (depth <= 1) return;
+        for (int i = 0; i < width; i++) tree(dir.child("dir" + i), depth - 1, width, files, fileSize);
+    }
+
+    static void delete(FileHandle dir) {
+        if (dir != null) dir.deleteDirectory();
+    }
+}
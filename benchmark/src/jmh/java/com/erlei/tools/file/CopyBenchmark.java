@@ -0,0 +1,65 @@
+package com.erlei.tools.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by lll on 2019/9/16
+ * Email : erleizh@gmail.com
+ * Describe : 复制单个文件和目录树，目录树对比顺序复制和 {@link CopyTask} 并行复制
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CopyBenchmark {
+
+    @Param({"65536", "16777216"})
+    public int fileSize;
+
+    private FileHandle mDir;
+    private FileHandle mFile;
+    private FileHandle mTree;
+
+    @Setup
+    public void setup() throws IOException {
+        mDir = BenchmarkFiles.tempDir("copy");
+        mFile = mDir.child("file").writeBytes(BenchmarkFiles.randomBytes(fileSize), false);
+        mTree = mDir.child("tree");
+        BenchmarkFiles.tree(mTree, 3, 8, 8, 4096);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFiles.delete(mDir);
+    }
+
+    @Benchmark
+    public void copyFile() {
+        mFile.copyTo(mDir.child("file-copy"));
+    }
+
+    @Benchmark
+    public void copyTree() {
+        FileHandle dest = mDir.child("tree-copy");
+        dest.deleteDirectory();
+        mTree.copyTo(dest);
+    }
+
+    @Benchmark
+    public FileHandle copyTreeParallel() throws ExecutionException, InterruptedException {
+        FileHandle dest = mDir.child("tree-copy-parallel");
+        dest.deleteDirectory();
+        return mTree.copyTo(dest, new CopyOptions()).get();
+    }
+}
@@ -0,0 +1,90 @@
+package com.erlei.tools.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by lll on 2019/9/16
+ * Email : erleizh@gmail.com
+ * Describe : 列出目录和统计目录大小，{@link FileHandle#length()} 使用一棵 5 层，每层 6 个子目录的目录树
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DirectoryBenchmark {
+
+    private static final int FILES = 1000;
+
+    private FileHandle mDir;
+    private FileHandle mFlat;
+    private FileHandle mDeep;
+
+    @Setup
+    public void setup() throws IOException {
+        mDir = BenchmarkFiles.tempDir("directory");
+        mFlat = mDir.child("flat");
+        for (int i = 0; i < FILES; i++) mFlat.child("file" + i + (i % 2 == 0 ? ".txt" : ".bin")).writeString("", false);
+        mDeep = mDir.child("deep");
+        BenchmarkFiles.tree(mDeep, 5, 6, 4, 128);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFiles.delete(mDir);
+    }
+
+    @Benchmark
+    public List<FileHandle> list() {
+        return mFlat.list();
+    }
+
+    @Benchmark
+    public List<FileHandle> listSuffix() {
+        return mFlat.list(".txt");
+    }
+
+    @Benchmark
+    public List<FileHandle> listFileFilter() {
+        return mFlat.list(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(".txt");
+            }
+        });
+    }
+
+    @Benchmark
+    public List<FileHandle> listFilenameFilter() {
+        return mFlat.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".txt");
+            }
+        });
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long length() {
+        return mDeep.length();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long lengthParallel() {
+        return mDeep.walkSize(new WalkOptions().parallelism(Runtime.getRuntime().availableProcessors()));
+    }
+}
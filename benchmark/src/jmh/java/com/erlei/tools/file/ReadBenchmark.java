@@ -0,0 +1,60 @@
+package com.erlei.tools.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by lll on 2019/9/16
+ * Email : erleizh@gmail.com
+ * Describe : {@link FileHandle#readBytes()} 和 {@link FileHandle#readString()}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReadBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    private FileHandle mDir;
+    private FileHandle mBinary;
+    private FileHandle mText;
+
+    @Setup
+    public void setup() throws IOException {
+        mDir = BenchmarkFiles.tempDir("read");
+        mBinary = mDir.child("binary").writeBytes(BenchmarkFiles.randomBytes(size), false);
+        mText = mDir.child("text").writeString(BenchmarkFiles.text(size), false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFiles.delete(mDir);
+    }
+
+    @Benchmark
+    public byte[] readBytes() {
+        return mBinary.readBytes();
+    }
+
+    @Benchmark
+    public String readString() {
+        return mText.readString("UTF-8");
+    }
+
+    @Benchmark
+    public int readAt() {
+        byte[] bytes = new byte[Math.min(size, 4096)];
+        return mBinary.readAt(size / 2 - bytes.length / 2, bytes, 0, bytes.length);
+    }
+}
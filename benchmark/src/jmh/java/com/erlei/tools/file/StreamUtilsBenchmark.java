@@ -0,0 +1,69 @@
+package com.erlei.tools.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by lll on 2019/9/16
+ * Email : erleizh@gmail.com
+ * Describe : {@link StreamUtils#copyStream} 在不同缓冲区大小下的吞吐量，以及使用线程缓冲池的默认重载
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StreamUtilsBenchmark {
+
+    private static final int DATA_SIZE = 4 * 1024 * 1024;
+
+    @Param({"512", "4096", "16384", "65536"})
+    public int bufferSize;
+
+    private byte[] mData;
+    private byte[] mBuffer;
+    private final OutputStream mSink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setup() {
+        mData = BenchmarkFiles.randomBytes(DATA_SIZE);
+        mBuffer = new byte[bufferSize];
+    }
+
+    @Benchmark
+    public void copyStream() throws IOException {
+        StreamUtils.copyStream(new ByteArrayInputStream(mData), mSink, mBuffer);
+    }
+
+    @Benchmark
+    public void copyStreamAllocating() throws IOException {
+        StreamUtils.copyStream(new ByteArrayInputStream(mData), mSink, bufferSize);
+    }
+
+    @Benchmark
+    public void copyStreamPooled() throws IOException {
+        StreamUtils.copyStream(new ByteArrayInputStream(mData), mSink);
+    }
+
+    @Benchmark
+    public byte[] copyStreamToByteArray() throws IOException {
+        return StreamUtils.copyStreamToByteArray(new ByteArrayInputStream(mData), DATA_SIZE);
+    }
+}
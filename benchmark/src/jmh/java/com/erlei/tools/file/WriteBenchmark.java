@@ -0,0 +1,55 @@
+package com.erlei.tools.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by lll on 2019/9/16
+ * Email : erleizh@gmail.com
+ * Describe : {@link FileHandle#writeBytes(byte[], boolean)} 和 {@link FileHandle#writeBytesAtomic(byte[], boolean)}，
+ * 逐行追加写入与 size 无关，见 {@link AppendBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WriteBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    private FileHandle mDir;
+    private byte[] mBytes;
+    private FileHandle mFile;
+
+    @Setup
+    public void setup() throws IOException {
+        mDir = BenchmarkFiles.tempDir("write");
+        mBytes = BenchmarkFiles.randomBytes(size);
+        mFile = mDir.child("file");
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFiles.delete(mDir);
+    }
+
+    @Benchmark
+    public FileHandle writeBytes() {
+        return mFile.writeBytes(mBytes, false);
+    }
+
+    @Benchmark
+    public FileHandle writeBytesAtomic() {
+        return mFile.writeBytesAtomic(mBytes, false);
+    }
+}